@@ -0,0 +1,220 @@
+package depthCameras;
+
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import numericalLibrary.types.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sensorCalibrationLibrary.depthCameras.DepthImage;
+import sensorCalibrationLibrary.depthCameras.PointCloudBuffer;
+import sensorCalibrationLibrary.depthCameras.VoxelGrid;
+import sensorCalibrationLibrary.depthCameras.maixSenseA010.MaixSenseA010DefaultCalibration;
+import sensorCalibrationLibrary.depthCameras.maixSenseA010.MaixSenseA010Image;
+
+
+
+/**
+ * Benchmarks the conversion of depth images into point clouds.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar DepthCameraCalibrationBenchmark -prof gc} to also obtain the allocation rate.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 , time = 1 )
+@Measurement( iterations = 10 , time = 1 )
+@Fork( 1 )
+public class DepthCameraCalibrationBenchmark
+{
+    ////////////////////////////////////////////////////////////////
+    // PARAMETERS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of rows or columns of the square image (the MaixSense-A010 bins its 100x100 image into 50x50 or 25x25).
+     */
+    @Param( { "25" , "50" , "100" } )
+    public int imageRowsCols;
+    
+    /**
+     * Fraction of pixels that are not valid.
+     */
+    @Param( { "0.1" } )
+    public double invalidFraction;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    private SyntheticDepthImage image;
+    
+    private MaixSenseA010Image frameImage;
+    
+    private MaixSenseA010DefaultCalibration calibration;
+    
+    private final double[] point = new double[3];
+    
+    private final PointCloudBuffer pointCloud = new PointCloudBuffer( 0 );
+    
+    private final VoxelGrid voxelGrid = new VoxelGrid( 0.02 );
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // SETUP
+    ////////////////////////////////////////////////////////////////
+    
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        this.image = new SyntheticDepthImage( this.imageRowsCols , this.invalidFraction , 42 );
+        this.frameImage = new MaixSenseA010Image( syntheticFrame( this.imageRowsCols , this.invalidFraction , 42 ) , this.imageRowsCols , 0 );
+        this.calibration = new MaixSenseA010DefaultCalibration();
+        this.calibration.setImageSize( this.imageRowsCols );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // BENCHMARKS
+    ////////////////////////////////////////////////////////////////
+    
+    @Benchmark
+    public List<Vector3> imageToPointCloud()
+    {
+        return this.calibration.imageToPointCloud( this.image );
+    }
+    
+    
+    @Benchmark
+    public void pixelToPoint3Into( Blackhole blackhole )
+    {
+        double[] point = this.point;
+        for( int i=0; i<this.image.rows(); i++ ) {
+            for( int j=0; j<this.image.cols(); j++ ) {
+                this.calibration.pixelToPoint3( j , i , this.image.depth( i , j ) , point , 0 );
+                blackhole.consume( point );
+            }
+        }
+    }
+    
+    
+    @Benchmark
+    public PointCloudBuffer imageToPointCloudBuffer()
+    {
+        this.calibration.imageToPointCloud( this.image , this.pointCloud );
+        return this.pointCloud;
+    }
+    
+    
+    @Benchmark
+    public PointCloudBuffer frameToPointCloudBuffer()
+    {
+        this.calibration.imageToPointCloud( this.frameImage , this.pointCloud );
+        return this.pointCloud;
+    }
+    
+    
+    @Benchmark
+    public PointCloudBuffer frameToVoxelCentroids()
+    {
+        this.calibration.imageToVoxelCentroids( this.frameImage , this.voxelGrid , this.pointCloud );
+        return this.pointCloud;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns a raw MaixSense-A010 frame with random depth codes, and a given fraction of saturated pixels.
+     */
+    private static ByteBuffer syntheticFrame( int rowsCols , double invalidFraction , long seed )
+    {
+        ByteBuffer frame = ByteBuffer.allocateDirect( rowsCols * rowsCols );
+        Random randomNumberGenerator = new Random( seed );
+        for( int p=0; p<frame.capacity(); p++ ) {
+            boolean valid = ( randomNumberGenerator.nextDouble() >= invalidFraction );
+            frame.put( p , (byte)( valid ? 1 + randomNumberGenerator.nextInt( 254 ) : 255 ) );
+        }
+        return frame;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Square depth image with random depths in [0.2,2.5] m, and a given fraction of saturated pixels.
+     */
+    private static class SyntheticDepthImage
+        implements DepthImage
+    {
+        private final int rowsCols;
+        
+        private final double[] depth;
+        
+        private final boolean[] valid;
+        
+        
+        public SyntheticDepthImage( int rowsCols , double invalidFraction , long seed )
+        {
+            this.rowsCols = rowsCols;
+            this.depth = new double[rowsCols * rowsCols];
+            this.valid = new boolean[rowsCols * rowsCols];
+            Random randomNumberGenerator = new Random( seed );
+            for( int p=0; p<this.depth.length; p++ ) {
+                this.depth[p] = 0.2 + 2.3 * randomNumberGenerator.nextDouble();
+                this.valid[p] = ( randomNumberGenerator.nextDouble() >= invalidFraction );
+            }
+        }
+        
+        
+        public int rows()
+        {
+            return this.rowsCols;
+        }
+        
+        
+        public int cols()
+        {
+            return this.rowsCols;
+        }
+        
+        
+        public boolean checkPixel( int i , int j )
+        {
+            return this.valid[i * this.rowsCols + j];
+        }
+        
+        
+        public double depth( int i , int j )
+        {
+            return this.depth[i * this.rowsCols + j];
+        }
+        
+    }
+    
+}
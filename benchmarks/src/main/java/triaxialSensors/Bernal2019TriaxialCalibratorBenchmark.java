@@ -0,0 +1,127 @@
+package triaxialSensors;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibrator;
+
+
+
+/**
+ * Benchmarks the ingest and the solve of {@link Bernal2019TriaxialCalibrator}.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar Bernal2019TriaxialCalibratorBenchmark -prof gc} to also obtain the allocation rate.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 , time = 1 )
+@Measurement( iterations = 10 , time = 1 )
+@Fork( 1 )
+public class Bernal2019TriaxialCalibratorBenchmark
+{
+    ////////////////////////////////////////////////////////////////
+    // PARAMETERS
+    ////////////////////////////////////////////////////////////////
+    
+    @Param( { "0" , "1" , "2" , "3" , "4" , "5" } )
+    public int polynomialOrder;
+    
+    @Param( { "1000" } )
+    public int samples;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    private SyntheticTriaxialData data;
+    
+    private Bernal2019TriaxialCalibrator calibrator;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // SETUP
+    ////////////////////////////////////////////////////////////////
+    
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        this.data = new SyntheticTriaxialData( this.samples , 42 );
+        this.calibrator = new Bernal2019TriaxialCalibrator();
+        this.calibrator.setPolynomialOrder( this.polynomialOrder );
+        this.calibrator.addCalibrationData( this.data.xyz , this.data.T , this.data.y , this.data.w , 0 , this.samples );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // BENCHMARKS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Adds the whole data set one measurement at a time.
+     */
+    @Benchmark
+    public void addCalibrationData()
+    {
+        for( int n=0; n<this.samples; n++ ) {
+            this.calibrator.addCalibrationData( this.data.w[n] , this.data.xyz[3*n+0] , this.data.xyz[3*n+1] , this.data.xyz[3*n+2] , this.data.T[n] , this.data.y[n] );
+        }
+    }
+    
+    
+    /**
+     * Adds the whole data set as a single block.
+     */
+    @Benchmark
+    public void addCalibrationDataBlock()
+    {
+        this.calibrator.addCalibrationData( this.data.xyz , this.data.T , this.data.y , this.data.w , 0 , this.samples );
+    }
+    
+    
+    /**
+     * Solves the calibration from the accumulated tensors.
+     */
+    @Benchmark
+    public Bernal2019TriaxialCalibration calibrate()
+    {
+        this.calibrator.calibrate();
+        return this.calibrator.getCalibration();
+    }
+    
+    
+    /**
+     * Adds the whole data set one measurement at a time to a new calibrator, and solves the calibration.
+     */
+    @Benchmark
+    public void ingestAndCalibrate( Blackhole blackhole )
+    {
+        Bernal2019TriaxialCalibrator freshCalibrator = new Bernal2019TriaxialCalibrator();
+        freshCalibrator.setPolynomialOrder( this.polynomialOrder );
+        for( int n=0; n<this.samples; n++ ) {
+            freshCalibrator.addCalibrationData( this.data.w[n] , this.data.xyz[3*n+0] , this.data.xyz[3*n+1] , this.data.xyz[3*n+2] , this.data.T[n] , this.data.y[n] );
+        }
+        freshCalibrator.calibrate();
+        blackhole.consume( freshCalibrator.getCalibration() );
+    }
+    
+}
@@ -0,0 +1,76 @@
+package triaxialSensors;
+
+
+import java.util.Random;
+
+
+
+/**
+ * Generates synthetic triaxial calibration data for the benchmarks.
+ * <p>
+ * Directions are drawn as in {@code SimpleCalibrationExample}: normalized Gaussian vectors.
+ * They are then distorted with a temperature-dependent scale and offset, so that the calibration has something to correct.
+ */
+public class SyntheticTriaxialData
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Interleaved raw measurements (x0,y0,z0,x1,y1,z1,...).
+     */
+    public final double[] xyz;
+    
+    /**
+     * Temperature of each measurement.
+     */
+    public final double[] T;
+    
+    /**
+     * Norm that each calibrated measurement should have.
+     */
+    public final double[] y;
+    
+    /**
+     * Weight of each measurement.
+     */
+    public final double[] w;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Generates synthetic triaxial calibration data.
+     * 
+     * @param samples   number of measurements.
+     * @param seed      seed of the random number generator.
+     */
+    public SyntheticTriaxialData( int samples , long seed )
+    {
+        this.xyz = new double[3 * samples];
+        this.T = new double[samples];
+        this.y = new double[samples];
+        this.w = new double[samples];
+        Random randomNumberGenerator = new Random( seed );
+        for( int n=0; n<samples; n++ ) {
+            double[] xyz = new double[3];
+            xyz[0] = randomNumberGenerator.nextGaussian();
+            xyz[1] = randomNumberGenerator.nextGaussian();
+            xyz[2] = randomNumberGenerator.nextGaussian();
+            double xyzNorm = Math.sqrt( xyz[0] * xyz[0]  +  xyz[1] * xyz[1]  +  xyz[2] * xyz[2] );
+            double temperature = 20.0 + 10.0 * randomNumberGenerator.nextDouble();
+            double dT = temperature - 25.0;
+            this.xyz[3*n+0] = xyz[0] / xyzNorm * ( 1.05 + 0.002 * dT )  +  0.02;
+            this.xyz[3*n+1] = xyz[1] / xyzNorm * 0.97  +  0.01 * xyz[0] / xyzNorm  -  0.03;
+            this.xyz[3*n+2] = xyz[2] / xyzNorm * 1.01  +  0.001 * dT;
+            this.T[n] = temperature;
+            this.y[n] = 1.0;
+            this.w[n] = 1.0;
+        }
+    }
+    
+}
@@ -0,0 +1,190 @@
+package triaxialSensors;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibrator;
+import sensorCalibrationLibrary.triaxialSensors.OffsetTriaxialCalibration;
+
+
+
+/**
+ * Benchmarks the correction of measurements with {@link Bernal2019TriaxialCalibration} and {@link OffsetTriaxialCalibration}.
+ * <p>
+ * Every benchmark corrects the whole data set, so scores are given per data set.
+ * The structure-of-arrays benchmarks use the scalar fallback here; {@link TriaxialCalibrationVectorBenchmark} runs them with the Vector API.
+ * Run with {@code java -jar target/benchmarks.jar TriaxialCalibrationBenchmark -prof gc} to also obtain the allocation rate.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 , time = 1 )
+@Measurement( iterations = 10 , time = 1 )
+@Fork( 1 )
+public class TriaxialCalibrationBenchmark
+{
+    ////////////////////////////////////////////////////////////////
+    // PARAMETERS
+    ////////////////////////////////////////////////////////////////
+    
+    @Param( { "0" , "2" , "5" } )
+    public int polynomialOrder;
+    
+    @Param( { "10000" } )
+    public int samples;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    private SyntheticTriaxialData data;
+    
+    private double[][] measurements;
+    
+    private double[] output;
+    
+    private double[] x;
+    
+    private double[] y;
+    
+    private double[] z;
+    
+    private double[] outX;
+    
+    private double[] outY;
+    
+    private double[] outZ;
+    
+    private Bernal2019TriaxialCalibration bernal2019Calibration;
+    
+    private OffsetTriaxialCalibration offsetCalibration;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // SETUP
+    ////////////////////////////////////////////////////////////////
+    
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        this.data = new SyntheticTriaxialData( this.samples , 42 );
+        this.measurements = new double[this.samples][3];
+        for( int n=0; n<this.samples; n++ ) {
+            System.arraycopy( this.data.xyz , 3*n , this.measurements[n] , 0 , 3 );
+        }
+        this.output = new double[3 * this.samples];
+        this.x = new double[this.samples];
+        this.y = new double[this.samples];
+        this.z = new double[this.samples];
+        for( int n=0; n<this.samples; n++ ) {
+            this.x[n] = this.data.xyz[3*n];
+            this.y[n] = this.data.xyz[3*n+1];
+            this.z[n] = this.data.xyz[3*n+2];
+        }
+        this.outX = new double[this.samples];
+        this.outY = new double[this.samples];
+        this.outZ = new double[this.samples];
+        // Calibrate with the synthetic data.
+        Bernal2019TriaxialCalibrator calibrator = new Bernal2019TriaxialCalibrator();
+        calibrator.setPolynomialOrder( this.polynomialOrder );
+        calibrator.addCalibrationData( this.data.xyz , this.data.T , this.data.y , this.data.w , 0 , this.samples );
+        calibrator.calibrate();
+        this.bernal2019Calibration = calibrator.getCalibration();
+        this.bernal2019Calibration.setTemperature( 25.0 );
+        this.offsetCalibration = new OffsetTriaxialCalibration();
+        this.offsetCalibration.setOffset( -0.02 , 0.03 , 0.0 );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // BENCHMARKS
+    ////////////////////////////////////////////////////////////////
+    
+    @Benchmark
+    public void bernal2019Correct( Blackhole blackhole )
+    {
+        for( int n=0; n<this.samples; n++ ) {
+            blackhole.consume( this.bernal2019Calibration.correct( this.measurements[n] ) );
+        }
+    }
+    
+    
+    @Benchmark
+    public void bernal2019CorrectInto( Blackhole blackhole )
+    {
+        double[] corrected = new double[3];
+        for( int n=0; n<this.samples; n++ ) {
+            this.bernal2019Calibration.correct( this.measurements[n] , corrected );
+            blackhole.consume( corrected );
+        }
+    }
+    
+    
+    @Benchmark
+    public double[] bernal2019CorrectBatch()
+    {
+        this.bernal2019Calibration.correctBatch( this.data.xyz , 0 , this.samples , this.output );
+        return this.output;
+    }
+    
+    
+    @Benchmark
+    public double[] bernal2019CorrectBatchSoA()
+    {
+        this.bernal2019Calibration.correctBatch( this.x , this.y , this.z , 0 , this.samples , this.outX , this.outY , this.outZ );
+        return this.outZ;
+    }
+    
+    
+    @Benchmark
+    public double[] bernal2019CorrectBatchSoAPerSampleTemperature()
+    {
+        this.bernal2019Calibration.correctBatch( this.x , this.y , this.z , this.data.T , 0 , this.samples , this.outX , this.outY , this.outZ );
+        return this.outZ;
+    }
+    
+    
+    @Benchmark
+    public void offsetCorrect( Blackhole blackhole )
+    {
+        for( int n=0; n<this.samples; n++ ) {
+            blackhole.consume( this.offsetCalibration.correct( this.measurements[n] ) );
+        }
+    }
+    
+    
+    @Benchmark
+    public double[] offsetCorrectBatch()
+    {
+        this.offsetCalibration.correctBatch( this.data.xyz , 0 , this.samples , this.output );
+        return this.output;
+    }
+    
+    
+    @Benchmark
+    public double[] offsetCorrectBatchSoA()
+    {
+        this.offsetCalibration.correctBatch( this.x , this.y , this.z , 0 , this.samples , this.outX , this.outY , this.outZ );
+        return this.outZ;
+    }
+    
+}
@@ -0,0 +1,18 @@
+package triaxialSensors;
+
+
+import org.openjdk.jmh.annotations.Fork;
+
+
+
+/**
+ * Runs the benchmarks of {@link TriaxialCalibrationBenchmark} with the {@code jdk.incubator.vector} module added,
+ * so that the structure-of-arrays corrections use the Vector API kernel.
+ * <p>
+ * The benchmarks must have been built with the {@code vector-api} profile ({@code mvn package -Pvector-api}).
+ */
+@Fork( value = 1 , jvmArgsAppend = { "--add-modules=jdk.incubator.vector" } )
+public class TriaxialCalibrationVectorBenchmark
+    extends TriaxialCalibrationBenchmark
+{
+}
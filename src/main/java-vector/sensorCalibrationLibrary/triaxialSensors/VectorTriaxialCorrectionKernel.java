@@ -0,0 +1,124 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+
+
+/**
+ * Implements the loops of {@link TriaxialCorrectionKernel} with the Vector API.
+ * <p>
+ * It is compiled only with the {@code vector-api} profile, and loaded only if the {@code jdk.incubator.vector} module is available at runtime.
+ * The lanes perform the same operations in the same order as the scalar loops (no fused multiply-add), so results are identical.
+ * The remaining measurements that do not fill a vector are corrected by the scalar loops.
+ */
+class VectorTriaxialCorrectionKernel
+    extends TriaxialCorrectionKernel
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Preferred vector shape of the platform.
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    VectorTriaxialCorrectionKernel()
+    {
+        // fail here, and fall back to the scalar kernel, if the vector shape is not supported
+        DoubleVector.zero( SPECIES );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    void correct( double[] Kc , double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        DoubleVector K11 = DoubleVector.broadcast( SPECIES , Kc[0] );
+        DoubleVector K21 = DoubleVector.broadcast( SPECIES , Kc[1] );
+        DoubleVector K22 = DoubleVector.broadcast( SPECIES , Kc[2] );
+        DoubleVector K31 = DoubleVector.broadcast( SPECIES , Kc[3] );
+        DoubleVector K32 = DoubleVector.broadcast( SPECIES , Kc[4] );
+        DoubleVector K33 = DoubleVector.broadcast( SPECIES , Kc[5] );
+        DoubleVector c1 = DoubleVector.broadcast( SPECIES , Kc[6] );
+        DoubleVector c2 = DoubleVector.broadcast( SPECIES , Kc[7] );
+        DoubleVector c3 = DoubleVector.broadcast( SPECIES , Kc[8] );
+        int vectorEnd = offset + SPECIES.loopBound( count );
+        int i = offset;
+        for( ; i<vectorEnd; i+=SPECIES.length() ) {
+            DoubleVector xi = DoubleVector.fromArray( SPECIES , x , i );
+            DoubleVector yi = DoubleVector.fromArray( SPECIES , y , i );
+            DoubleVector zi = DoubleVector.fromArray( SPECIES , z , i );
+            K11.mul( xi ).add( c1 ).intoArray( outX , i );
+            K21.mul( xi ).add( K22.mul( yi ) ).add( c2 ).intoArray( outY , i );
+            K31.mul( xi ).add( K32.mul( yi ) ).add( K33.mul( zi ) ).add( c3 ).intoArray( outZ , i );
+        }
+        super.correct( Kc , x , y , z , i , offset + count - i , outX , outY , outZ );
+    }
+    
+    
+    void offset( double c1 , double c2 , double c3 , double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        int vectorEnd = offset + SPECIES.loopBound( count );
+        int i = offset;
+        for( ; i<vectorEnd; i+=SPECIES.length() ) {
+            DoubleVector.fromArray( SPECIES , x , i ).add( c1 ).intoArray( outX , i );
+            DoubleVector.fromArray( SPECIES , y , i ).add( c2 ).intoArray( outY , i );
+            DoubleVector.fromArray( SPECIES , z , i ).add( c3 ).intoArray( outZ , i );
+        }
+        super.offset( c1 , c2 , c3 , x , y , z , i , offset + count - i , outX , outY , outZ );
+    }
+    
+    
+    void correct( double[] z , double temperatureMin , double temperatureMax , double[] x , double[] y , double[] zz , double[] T , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        DoubleVector zero = DoubleVector.zero( SPECIES );
+        DoubleVector one = DoubleVector.broadcast( SPECIES , 1.0 );
+        int vectorEnd = offset + SPECIES.loopBound( count );
+        int i = offset;
+        for( ; i<vectorEnd; i+=SPECIES.length() ) {
+            DoubleVector t = DoubleVector.fromArray( SPECIES , T , i ).min( temperatureMax ).max( temperatureMin );
+            DoubleVector K11 = zero;
+            DoubleVector K21 = zero;
+            DoubleVector K22 = zero;
+            DoubleVector K31 = zero;
+            DoubleVector K32 = zero;
+            DoubleVector K33 = zero;
+            DoubleVector c1 = zero;
+            DoubleVector c2 = zero;
+            DoubleVector c3 = zero;
+            DoubleVector Tn = one;
+            for( int n9=0; n9<z.length; n9+=9 ) {
+                K11 = K11.add( Tn.mul( z[n9] ) );
+                K21 = K21.add( Tn.mul( z[n9+1] ) );
+                K22 = K22.add( Tn.mul( z[n9+2] ) );
+                K31 = K31.add( Tn.mul( z[n9+3] ) );
+                K32 = K32.add( Tn.mul( z[n9+4] ) );
+                K33 = K33.add( Tn.mul( z[n9+5] ) );
+                c1 = c1.add( Tn.mul( z[n9+6] ) );
+                c2 = c2.add( Tn.mul( z[n9+7] ) );
+                c3 = c3.add( Tn.mul( z[n9+8] ) );
+                Tn = Tn.mul( t );
+            }
+            DoubleVector xi = DoubleVector.fromArray( SPECIES , x , i );
+            DoubleVector yi = DoubleVector.fromArray( SPECIES , y , i );
+            DoubleVector zi = DoubleVector.fromArray( SPECIES , zz , i );
+            K11.mul( xi ).add( c1 ).intoArray( outX , i );
+            K21.mul( xi ).add( K22.mul( yi ) ).add( c2 ).intoArray( outY , i );
+            K31.mul( xi ).add( K32.mul( yi ) ).add( K33.mul( zi ) ).add( c3 ).intoArray( outZ , i );
+        }
+        super.correct( z , temperatureMin , temperatureMax , x , y , zz , T , i , offset + count - i , outX , outY , outZ );
+    }
+    
+}
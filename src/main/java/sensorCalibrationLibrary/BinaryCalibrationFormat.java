@@ -0,0 +1,197 @@
+package sensorCalibrationLibrary;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+import sensorCalibrationLibrary.depthCameras.maixSenseA010.MaixSenseA010DefaultCalibration;
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.OffsetTriaxialCalibration;
+
+
+
+/**
+ * Implements the versioned binary format of the calibrations.
+ * <p>
+ * A calibration record is made of a 16-byte header followed by a type-specific payload, all of it little-endian:
+ * <ul>
+ * <li> int: magic number ("SCLT").
+ * <li> short: format version.
+ * <li> short: calibration type.
+ * <li> int: payload size in bytes.
+ * <li> int: CRC-32 of the payload.
+ * </ul>
+ * Payloads start 8-byte aligned with respect to the record, so that the doubles can be read in place from a memory-mapped file.
+ */
+public final class BinaryCalibrationFormat
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Magic number that identifies a calibration record ("SCLT" when read as little-endian bytes).
+     */
+    public static final int MAGIC = 0x544C4353;
+    
+    /**
+     * Current version of the format.
+     */
+    public static final short VERSION = 1;
+    
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+    
+    /**
+     * Type of the records that store a {@link Bernal2019TriaxialCalibration}.
+     */
+    public static final short TYPE_BERNAL2019 = 1;
+    
+    /**
+     * Type of the records that store an {@link OffsetTriaxialCalibration}.
+     */
+    public static final short TYPE_OFFSET = 2;
+    
+    /**
+     * Type of the records that store a {@link MaixSenseA010DefaultCalibration}.
+     */
+    public static final short TYPE_MAIXSENSE_A010_DEFAULT = 3;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    private BinaryCalibrationFormat()
+    {
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the type of the calibration stored in the record at the position of the buffer, without modifying the buffer.
+     * 
+     * @param buffer    buffer with a record at its position.
+     * @return  type of the calibration stored in the record.
+     * @throws IllegalArgumentException     if there is no record at the position of the buffer.
+     */
+    public static short recordType( ByteBuffer buffer )
+    {
+        ByteBuffer record = buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        int start = buffer.position();
+        if( record.remaining() < HEADER_SIZE  ||  record.getInt( start ) != MAGIC ) {
+            throw new IllegalArgumentException( "BinaryCalibrationFormat: not a binary calibration." );
+        }
+        return record.getShort( start + 6 );
+    }
+    
+    
+    /**
+     * Starts writing a record at the position of the buffer.
+     * <p>
+     * The header is left empty until {@link #endRecord(ByteBuffer, ByteBuffer, short)} is called.
+     * 
+     * @param buffer    buffer in which the record is written.
+     * @return  little-endian view of the buffer positioned at the start of the payload.
+     */
+    public static ByteBuffer beginRecord( ByteBuffer buffer )
+    {
+        ByteBuffer record = buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        record.position( buffer.position() + HEADER_SIZE );
+        return record;
+    }
+    
+    
+    /**
+     * Finishes writing a record: fills its header and advances the position of the buffer past the record.
+     * 
+     * @param buffer    buffer in which the record is written.
+     * @param record    view returned by {@link #beginRecord(ByteBuffer)}, positioned at the end of the payload.
+     * @param type      type of the calibration stored in the record.
+     */
+    public static void endRecord( ByteBuffer buffer , ByteBuffer record , short type )
+    {
+        int start = buffer.position();
+        int payloadSize = record.position() - start - HEADER_SIZE;
+        record.putInt( start , MAGIC );
+        record.putShort( start + 4 , VERSION );
+        record.putShort( start + 6 , type );
+        record.putInt( start + 8 , payloadSize );
+        record.putInt( start + 12 , crc( record , start + HEADER_SIZE , payloadSize ) );
+        buffer.position( record.position() );
+    }
+    
+    
+    /**
+     * Starts reading a record at the position of the buffer, checking its header and its checksum.
+     * 
+     * @param buffer    buffer from which the record is read.
+     * @param type      expected type of the calibration stored in the record.
+     * @return  little-endian view of the buffer positioned at the start of the payload.
+     * @throws IllegalArgumentException     if the header is not valid, the record has a different type, or the checksum does not match.
+     */
+    public static ByteBuffer beginReading( ByteBuffer buffer , short type )
+    {
+        ByteBuffer record = buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+        int start = buffer.position();
+        if( record.remaining() < HEADER_SIZE  ||  record.getInt( start ) != MAGIC ) {
+            throw new IllegalArgumentException( "BinaryCalibrationFormat: not a binary calibration." );
+        }
+        if( record.getShort( start + 4 ) != VERSION ) {
+            throw new IllegalArgumentException( "BinaryCalibrationFormat: unsupported binary calibration version " + record.getShort( start + 4 ) + "." );
+        }
+        if( record.getShort( start + 6 ) != type ) {
+            throw new IllegalArgumentException( "BinaryCalibrationFormat: wrong calibration type " + record.getShort( start + 6 ) + "." );
+        }
+        int payloadSize = record.getInt( start + 8 );
+        if( payloadSize < 0  ||  payloadSize > record.remaining() - HEADER_SIZE ) {
+            throw new IllegalArgumentException( "BinaryCalibrationFormat: truncated binary calibration." );
+        }
+        if( record.getInt( start + 12 ) != crc( record , start + HEADER_SIZE , payloadSize ) ) {
+            throw new IllegalArgumentException( "BinaryCalibrationFormat: wrong binary calibration checksum." );
+        }
+        record.position( start + HEADER_SIZE );
+        record.limit( start + HEADER_SIZE + payloadSize );
+        return record;
+    }
+    
+    
+    /**
+     * Finishes reading a record: advances the position of the buffer past the record.
+     * 
+     * @param buffer    buffer from which the record is read.
+     * @param record    view returned by {@link #beginReading(ByteBuffer, short)}.
+     */
+    public static void endReading( ByteBuffer buffer , ByteBuffer record )
+    {
+        buffer.position( record.limit() );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the CRC-32 of a region of the buffer.
+     */
+    private static int crc( ByteBuffer buffer , int start , int size )
+    {
+        ByteBuffer region = buffer.duplicate();
+        region.limit( start + size );
+        region.position( start );
+        CRC32 crc = new CRC32();
+        crc.update( region );
+        return (int)crc.getValue();
+    }
+    
+}
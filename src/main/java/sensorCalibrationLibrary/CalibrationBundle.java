@@ -0,0 +1,326 @@
+package sensorCalibrationLibrary;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import sensorCalibrationLibrary.depthCameras.DepthCameraCalibration;
+import sensorCalibrationLibrary.depthCameras.maixSenseA010.MaixSenseA010DefaultCalibration;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.OffsetTriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.TriaxialCalibration;
+
+
+
+/**
+ * Gives random access to the calibrations packed in a bundle file written by {@link CalibrationBundleWriter}.
+ * <p>
+ * The file is memory-mapped, and opening it only checks its header, so the time to open a bundle does not depend on the number of calibrations it holds.
+ * Sensor IDs are looked up with a binary search over the sorted index,
+ * and each calibration is materialized the first time it is requested and cached afterwards.
+ * <p>
+ * A {@link CalibrationBundle} can be used from several threads, but the calibrations it returns are shared:
+ * every request for a sensor returns the same instance, which is not thread-safe.
+ * Threads that modify a calibration (for example, with {@link Bernal2019TriaxialCalibration#setTemperature(double)})
+ * must synchronize their use of it, or read their own instance from a copy of the bundle file.
+ * <p>
+ * The offsets and lengths read from the index are checked against the size of the file,
+ * so a corrupt bundle throws {@link IllegalArgumentException} when the affected entries are accessed.
+ */
+public class CalibrationBundle
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Memory-mapped bundle file.
+     */
+    private final ByteBuffer buffer;
+    
+    /**
+     * Number of calibrations in the bundle.
+     */
+    private final int size;
+    
+    /**
+     * Calibrations that have already been materialized, by sensor ID.
+     */
+    private final ConcurrentHashMap<String,Object> materialized;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    private CalibrationBundle( ByteBuffer buffer )
+    {
+        this.buffer = buffer.order( ByteOrder.LITTLE_ENDIAN );
+        if( buffer.limit() < CalibrationBundleWriter.HEADER_SIZE  ||  buffer.getInt( 0 ) != CalibrationBundleWriter.MAGIC ) {
+            throw new IllegalArgumentException( "CalibrationBundle: not a calibration bundle." );
+        }
+        if( buffer.getShort( 4 ) != CalibrationBundleWriter.VERSION ) {
+            throw new IllegalArgumentException( "CalibrationBundle: unsupported bundle version " + buffer.getShort( 4 ) + "." );
+        }
+        this.size = buffer.getInt( 8 );
+        if( this.size < 0  ||  CalibrationBundleWriter.HEADER_SIZE + (long)CalibrationBundleWriter.INDEX_ENTRY_SIZE * this.size > buffer.limit() ) {
+            throw new IllegalArgumentException( "CalibrationBundle: truncated calibration bundle." );
+        }
+        this.materialized = new ConcurrentHashMap<String,Object>();
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Opens a bundle file.
+     * 
+     * @param path  path of the bundle file.
+     * @return  {@link CalibrationBundle} backed by the memory-mapped file.
+     * @throws IOException  if the file can not be read.
+     * @throws IllegalArgumentException     if the file is not a valid bundle.
+     */
+    public static CalibrationBundle open( String path ) throws IOException
+    {
+        Measurement measurement = Instrumentation.beginBundleFile();
+        try( FileChannel channel = FileChannel.open( Paths.get( path ) , StandardOpenOption.READ ) ) {
+            MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size() );
+            CalibrationBundle bundle = new CalibrationBundle( buffer );
+            Instrumentation.endBundleFile( measurement , Instrumentation.LOAD , path , bundle.size() , buffer.capacity() );
+            return bundle;
+        }
+    }
+    
+    
+    /**
+     * Wraps a buffer that holds a bundle.
+     * 
+     * @param buffer    buffer that holds a bundle, from position 0.
+     * @return  {@link CalibrationBundle} backed by the buffer.
+     * @throws IllegalArgumentException     if the buffer does not hold a valid bundle.
+     */
+    public static CalibrationBundle wrap( ByteBuffer buffer )
+    {
+        return new CalibrationBundle( buffer.duplicate() );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the number of calibrations in the bundle.
+     * 
+     * @return  number of calibrations in the bundle.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+    
+    
+    /**
+     * Checks if the bundle holds a calibration for a sensor.
+     * 
+     * @param sensorId  ID of the sensor.
+     * @return  true if the bundle holds a calibration for the sensor; false otherwise.
+     */
+    public boolean contains( String sensorId )
+    {
+        return ( this.materialized.containsKey( sensorId )  ||  this.find( sensorId ) >= 0 );
+    }
+    
+    
+    /**
+     * Returns the IDs of all the sensors in the bundle, sorted by their UTF-8 bytes.
+     * <p>
+     * This method reads the whole index.
+     * 
+     * @return  IDs of all the sensors in the bundle.
+     */
+    public List<String> sensorIds()
+    {
+        List<String> sensorIds = new ArrayList<String>( this.size );
+        for( int e=0; e<this.size; e++ ) {
+            sensorIds.add( new String( this.key( e ) , StandardCharsets.UTF_8 ) );
+        }
+        return sensorIds;
+    }
+    
+    
+    /**
+     * Returns the calibration of a triaxial sensor.
+     * 
+     * @param sensorId  ID of the sensor.
+     * @return  calibration of the sensor, shared with the other callers; null if the bundle does not hold a calibration for it.
+     * @throws IllegalArgumentException     if the calibration of the sensor is not a {@link TriaxialCalibration}, or the bundle is corrupt.
+     */
+    public TriaxialCalibration getTriaxialCalibration( String sensorId )
+    {
+        Object calibration = this.get( sensorId );
+        if( calibration != null  &&  !( calibration instanceof TriaxialCalibration ) ) {
+            throw new IllegalArgumentException( "CalibrationBundle: sensor " + sensorId + " does not have a triaxial calibration." );
+        }
+        return (TriaxialCalibration)calibration;
+    }
+    
+    
+    /**
+     * Returns the calibration of a depth camera.
+     * 
+     * @param sensorId  ID of the sensor.
+     * @return  calibration of the sensor, shared with the other callers; null if the bundle does not hold a calibration for it.
+     * @throws IllegalArgumentException     if the calibration of the sensor is not a {@link DepthCameraCalibration}, or the bundle is corrupt.
+     */
+    public DepthCameraCalibration getDepthCameraCalibration( String sensorId )
+    {
+        Object calibration = this.get( sensorId );
+        if( calibration != null  &&  !( calibration instanceof DepthCameraCalibration ) ) {
+            throw new IllegalArgumentException( "CalibrationBundle: sensor " + sensorId + " does not have a depth camera calibration." );
+        }
+        return (DepthCameraCalibration)calibration;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the calibration of a sensor, materializing it if it is requested for the first time.
+     */
+    private Object get( String sensorId )
+    {
+        Object calibration = this.materialized.get( sensorId );
+        if( calibration == null ) {
+            int e = this.find( sensorId );
+            if( e < 0 ) {
+                return null;
+            }
+            calibration = this.materialized.computeIfAbsent( sensorId , id -> this.materialize( e ) );
+        }
+        return calibration;
+    }
+    
+    
+    /**
+     * Builds the calibration stored in the e-th entry of the index.
+     */
+    private Object materialize( int e )
+    {
+        int entry = CalibrationBundleWriter.HEADER_SIZE + e * CalibrationBundleWriter.INDEX_ENTRY_SIZE;
+        int recordOffset = this.buffer.getInt( entry + 8 );
+        int recordLength = this.buffer.getInt( entry + 12 );
+        this.checkRange( recordOffset , recordLength );
+        ByteBuffer record = this.buffer.duplicate();
+        record.limit( recordOffset + recordLength );
+        record.position( recordOffset );
+        short type = BinaryCalibrationFormat.recordType( record );
+        switch( type ) {
+            case BinaryCalibrationFormat.TYPE_BERNAL2019:
+                Bernal2019TriaxialCalibration bernal2019Calibration = new Bernal2019TriaxialCalibration();
+                bernal2019Calibration.readBinary( record );
+                return bernal2019Calibration;
+            case BinaryCalibrationFormat.TYPE_OFFSET:
+                OffsetTriaxialCalibration offsetCalibration = new OffsetTriaxialCalibration();
+                offsetCalibration.readBinary( record );
+                return offsetCalibration;
+            case BinaryCalibrationFormat.TYPE_MAIXSENSE_A010_DEFAULT:
+                MaixSenseA010DefaultCalibration maixSenseCalibration = new MaixSenseA010DefaultCalibration();
+                maixSenseCalibration.readBinary( record );
+                return maixSenseCalibration;
+            default:
+                throw new IllegalArgumentException( "CalibrationBundle: unknown calibration type " + type + "." );
+        }
+    }
+    
+    
+    /**
+     * Checks that a range read from the index lies within the bundle.
+     */
+    private void checkRange( int offset , int length )
+    {
+        if( offset < 0  ||  length < 0  ||  (long)offset + length > this.buffer.limit() ) {
+            throw new IllegalArgumentException( "CalibrationBundle: corrupt calibration bundle." );
+        }
+    }
+    
+    
+    /**
+     * Returns the index entry of a sensor using a binary search; -1 if it is not in the bundle.
+     */
+    private int find( String sensorId )
+    {
+        byte[] key = sensorId.getBytes( StandardCharsets.UTF_8 );
+        int low = 0;
+        int high = this.size - 1;
+        while( low <= high ) {
+            int middle = ( low + high ) >>> 1;
+            int comparison = this.compareKey( middle , key );
+            if( comparison < 0 ) {
+                low = middle + 1;
+            } else if( comparison > 0 ) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+    
+    
+    /**
+     * Compares the key of the e-th entry of the index with a key, treating bytes as unsigned.
+     */
+    private int compareKey( int e , byte[] key )
+    {
+        int entry = CalibrationBundleWriter.HEADER_SIZE + e * CalibrationBundleWriter.INDEX_ENTRY_SIZE;
+        int keyOffset = this.buffer.getInt( entry );
+        int keyLength = this.buffer.getInt( entry + 4 );
+        this.checkRange( keyOffset , keyLength );
+        int n = Math.min( keyLength , key.length );
+        for( int i=0; i<n; i++ ) {
+            int difference = ( this.buffer.get( keyOffset + i ) & 0xFF ) - ( key[i] & 0xFF );
+            if( difference != 0 ) {
+                return difference;
+            }
+        }
+        return keyLength - key.length;
+    }
+    
+    
+    /**
+     * Returns the key of the e-th entry of the index.
+     */
+    private byte[] key( int e )
+    {
+        int entry = CalibrationBundleWriter.HEADER_SIZE + e * CalibrationBundleWriter.INDEX_ENTRY_SIZE;
+        int keyOffset = this.buffer.getInt( entry );
+        int keyLength = this.buffer.getInt( entry + 4 );
+        this.checkRange( keyOffset , keyLength );
+        byte[] key = new byte[keyLength];
+        for( int i=0; i<keyLength; i++ ) {
+            key[i] = this.buffer.get( keyOffset + i );
+        }
+        return key;
+    }
+    
+}
@@ -0,0 +1,257 @@
+package sensorCalibrationLibrary;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import sensorCalibrationLibrary.depthCameras.DepthCameraCalibration;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
+import sensorCalibrationLibrary.triaxialSensors.TriaxialCalibration;
+
+
+
+/**
+ * Packs many calibrations into a single bundle file that can be read with {@link CalibrationBundle}.
+ * <p>
+ * Each calibration is identified by the ID of its sensor.
+ * The file has the following layout, all of it little-endian:
+ * <ul>
+ * <li> Header (16 bytes): magic number ("SCLB"), format version (short), reserved (short), number of entries (int), size of the key table (int).
+ * <li> Index: one 16-byte entry per calibration, sorted by the UTF-8 bytes of the sensor ID:
+ *      offset of the key (int), length of the key (int), offset of the record (int), length of the record (int).
+ * <li> Key table: UTF-8 bytes of the sensor IDs.
+ * <li> Records: the calibrations in the format of {@link BinaryCalibrationFormat}, each of them starting 8-byte aligned.
+ * </ul>
+ */
+public class CalibrationBundleWriter
+{
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Magic number that identifies a bundle file ("SCLB" when read as little-endian bytes).
+     */
+    static final int MAGIC = 0x424C4353;
+    
+    /**
+     * Current version of the bundle format.
+     */
+    static final short VERSION = 1;
+    
+    /**
+     * Size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+    
+    /**
+     * Size of an index entry in bytes.
+     */
+    static final int INDEX_ENTRY_SIZE = 16;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Entries added to the bundle.
+     */
+    private final List<Entry> entries;
+    
+    /**
+     * IDs of the sensors added to the bundle.
+     */
+    private final Set<String> sensorIds;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link CalibrationBundleWriter}.
+     */
+    public CalibrationBundleWriter()
+    {
+        this.entries = new ArrayList<Entry>();
+        this.sensorIds = new HashSet<String>();
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Adds the calibration of a triaxial sensor to the bundle.
+     * 
+     * @param sensorId      ID of the sensor.
+     * @param calibration   calibration of the sensor.
+     * @throws IllegalArgumentException     if the bundle already contains a calibration for the sensor.
+     */
+    public void add( String sensorId , TriaxialCalibration calibration )
+    {
+        ByteBuffer record = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( record );
+        this.add( sensorId , record );
+    }
+    
+    
+    /**
+     * Adds the calibration of a depth camera to the bundle.
+     * 
+     * @param sensorId      ID of the sensor.
+     * @param calibration   calibration of the sensor.
+     * @throws IllegalArgumentException     if the bundle already contains a calibration for the sensor.
+     */
+    public void add( String sensorId , DepthCameraCalibration calibration )
+    {
+        ByteBuffer record = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( record );
+        this.add( sensorId , record );
+    }
+    
+    
+    /**
+     * Saves the bundle in a file.
+     * 
+     * @param path  path of the file.
+     * @throws IOException  if the file can not be written.
+     */
+    public void save( String path ) throws IOException
+    {
+        this.entries.sort( ( a , b ) -> compareUnsigned( a.key , b.key ) );
+        // Compute the layout.
+        int keyTableSize = 0;
+        for( Entry entry : this.entries ) {
+            keyTableSize += entry.key.length;
+        }
+        int keyTableOffset = HEADER_SIZE + INDEX_ENTRY_SIZE * this.entries.size();
+        int recordsOffset = align8( keyTableOffset + keyTableSize );
+        long size = recordsOffset;
+        for( Entry entry : this.entries ) {
+            size = align8( size ) + entry.record.length;
+        }
+        if( size > Integer.MAX_VALUE ) {
+            throw new IOException( "CalibrationBundleWriter: bundle larger than 2 GB." );
+        }
+        Measurement measurement = Instrumentation.beginBundleFile();
+        // Write header, index, key table, and records.
+        ByteBuffer buffer = ByteBuffer.allocate( (int)size ).order( ByteOrder.LITTLE_ENDIAN );
+        buffer.putInt( MAGIC );
+        buffer.putShort( VERSION );
+        buffer.putShort( (short)0 );
+        buffer.putInt( this.entries.size() );
+        buffer.putInt( keyTableSize );
+        int keyOffset = keyTableOffset;
+        int recordOffset = recordsOffset;
+        for( Entry entry : this.entries ) {
+            buffer.putInt( keyOffset );
+            buffer.putInt( entry.key.length );
+            buffer.putInt( recordOffset );
+            buffer.putInt( entry.record.length );
+            keyOffset += entry.key.length;
+            recordOffset = align8( recordOffset + entry.record.length );
+        }
+        for( Entry entry : this.entries ) {
+            buffer.put( entry.key );
+        }
+        for( Entry entry : this.entries ) {
+            buffer.position( align8( buffer.position() ) );
+            buffer.put( entry.record );
+        }
+        buffer.flip();
+        try( FileChannel channel = FileChannel.open( Paths.get( path ) , StandardOpenOption.CREATE , StandardOpenOption.TRUNCATE_EXISTING , StandardOpenOption.WRITE ) ) {
+            while( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+        }
+        Instrumentation.endBundleFile( measurement , Instrumentation.SAVE , path , this.entries.size() , size );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Compares two byte arrays lexicographically, treating bytes as unsigned.
+     */
+    static int compareUnsigned( byte[] a , byte[] b )
+    {
+        int n = Math.min( a.length , b.length );
+        for( int i=0; i<n; i++ ) {
+            int difference = ( a[i] & 0xFF ) - ( b[i] & 0xFF );
+            if( difference != 0 ) {
+                return difference;
+            }
+        }
+        return a.length - b.length;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    private void add( String sensorId , ByteBuffer record )
+    {
+        if( !this.sensorIds.add( sensorId ) ) {
+            throw new IllegalArgumentException( "CalibrationBundleWriter: sensor " + sensorId + " already added." );
+        }
+        this.entries.add( new Entry( sensorId.getBytes( StandardCharsets.UTF_8 ) , record.array() ) );
+    }
+    
+    
+    private static int align8( int offset )
+    {
+        return ( offset + 7 ) & ~7;
+    }
+    
+    
+    private static long align8( long offset )
+    {
+        return ( offset + 7 ) & ~7L;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Sensor ID and calibration record of an entry of the bundle.
+     */
+    private static class Entry
+    {
+        final byte[] key;
+        
+        final byte[] record;
+        
+        
+        Entry( byte[] key , byte[] record )
+        {
+            this.key = key;
+            this.record = record;
+        }
+        
+    }
+    
+}
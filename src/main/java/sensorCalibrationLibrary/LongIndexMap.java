@@ -0,0 +1,203 @@
+package sensorCalibrationLibrary;
+
+
+import java.util.Arrays;
+
+
+
+/**
+ * Primitive map from long keys to dense indices, used to accumulate sums per grid cell without creating objects.
+ * <p>
+ * Each key is given the next free index when it is first added, so the indices of the keys are 0 to {@link #size()}-1 in insertion order,
+ * and the caller can keep the values of each key in flat arrays indexed by it.
+ * The keys are stored in an open-addressing hash table with linear probing, which is kept at most half full.
+ * The map is meant to be reused: {@link #clear()} only visits the occupied entries, and keeps the capacity.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class LongIndexMap
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Hash table with the index of the key plus one, or 0 if the entry is empty.
+     */
+    private int[] table;
+    
+    /**
+     * Keys, in the order they were added.
+     */
+    private long[] keys;
+    
+    /**
+     * Entry of {@link #table} of each key.
+     */
+    private int[] entries;
+    
+    /**
+     * Number of keys.
+     */
+    private int size;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link LongIndexMap}.
+     * 
+     * @param capacity  number of keys that fit in the map before it grows; rounded up to a power of two.
+     * @throws IllegalArgumentException     if capacity is not between 1 and 2^29.
+     */
+    public LongIndexMap( int capacity )
+    {
+        if( capacity < 1  ||  capacity > ( 1 << 29 ) ) {
+            throw new IllegalArgumentException( "LongIndexMap: the capacity must be between 1 and 2^29." );
+        }
+        capacity = Integer.highestOneBit( 2 * capacity - 1 );
+        this.table = new int[2 * capacity];
+        this.keys = new long[capacity];
+        this.entries = new int[capacity];
+        this.size = 0;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the number of keys.
+     * 
+     * @return  number of keys.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+    
+    
+    /**
+     * Returns the number of keys that fit in the map before it grows.
+     * <p>
+     * The capacity only changes in {@link #add(long)}, so callers that keep values per index can grow their arrays to match after adding a new key.
+     * 
+     * @return  number of keys that fit in the map before it grows.
+     */
+    public int capacity()
+    {
+        return this.keys.length;
+    }
+    
+    
+    /**
+     * Returns the key of an index.
+     * 
+     * @param index     index of the key, between 0 and {@link #size()}-1.
+     * @return  key of the index.
+     */
+    public long key( int index )
+    {
+        if( index < 0  ||  index >= this.size ) {
+            throw new IndexOutOfBoundsException( "LongIndexMap: index " + index + " out of bounds for size " + this.size + "." );
+        }
+        return this.keys[index];
+    }
+    
+    
+    /**
+     * Removes all the keys, keeping the capacity.
+     */
+    public void clear()
+    {
+        for( int v=0; v<this.size; v++ ) {
+            this.table[this.entries[v]] = 0;
+        }
+        this.size = 0;
+    }
+    
+    
+    /**
+     * Returns the index of a key, adding the key if it is not in the map.
+     * <p>
+     * A key that was not in the map is given the index {@link #size()} had before the call, so callers can tell new keys apart by comparing both.
+     * 
+     * @param key   key.
+     * @return  index of the key.
+     */
+    public int add( long key )
+    {
+        int mask = this.table.length - 1;
+        int entry = hash( key ) & mask;
+        while( true ) {
+            int v = this.table[entry] - 1;
+            if( v < 0 ) {
+                break;
+            }
+            if( this.keys[v] == key ) {
+                return v;
+            }
+            entry = ( entry + 1 ) & mask;
+        }
+        if( this.size == this.keys.length ) {
+            this.grow();
+            mask = this.table.length - 1;
+            entry = hash( key ) & mask;
+            while( this.table[entry] != 0 ) {
+                entry = ( entry + 1 ) & mask;
+            }
+        }
+        int v = this.size++;
+        this.table[entry] = v + 1;
+        this.keys[v] = key;
+        this.entries[v] = entry;
+        return v;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Doubles the capacity of the map, and rebuilds the hash table.
+     */
+    private void grow()
+    {
+        int capacity = 2 * this.keys.length;
+        this.keys = Arrays.copyOf( this.keys , capacity );
+        this.entries = Arrays.copyOf( this.entries , capacity );
+        this.table = new int[2 * capacity];
+        int mask = this.table.length - 1;
+        for( int v=0; v<this.size; v++ ) {
+            int entry = hash( this.keys[v] ) & mask;
+            while( this.table[entry] != 0 ) {
+                entry = ( entry + 1 ) & mask;
+            }
+            this.table[entry] = v + 1;
+            this.entries[v] = entry;
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Fibonacci hashing: multiplies by 2^64 divided by the golden ratio and keeps the high bits,
+     * which are well mixed even when the keys differ only in a few low bits of some of their fields.
+     */
+    private static int hash( long key )
+    {
+        return (int)( ( key * 0x9E3779B97F4A7C15L ) >>> 32 );
+    }
+    
+}
@@ -1,10 +1,13 @@
 package sensorCalibrationLibrary.depthCameras;
 
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import numericalLibrary.types.Vector3;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
 
 
 
@@ -29,11 +32,134 @@ public interface DepthCameraCalibration
     public Vector3 pixelToPoint3( double xImagePlane , double yImagePlane , double depthValue );
     
     
+    /**
+     * Computes the 3d point that corresponds to a pixel of the depth image without allocating memory.
+     * <p>
+     * Implementations are encouraged to override this method with a lookup of precomputed rays.
+     * 
+     * @param column    column of the pixel (x-coordinate in the image plane).
+     * @param row   row of the pixel (y-coordinate in the image plane).
+     * @param depthValue    depth value of the pixel.
+     * @param output    array in which the point (x,y,z) is stored.
+     * @param offset    index of output in which the x-coordinate of the point is stored.
+     */
+    public default void pixelToPoint3( int column , int row , double depthValue , double[] output , int offset )
+    {
+        Vector3 point = this.pixelToPoint3( (double)column , (double)row , depthValue );
+        output[offset] = point.x();
+        output[offset+1] = point.y();
+        output[offset+2] = point.z();
+    }
+    
+    
+    /**
+     * Returns the size in bytes of the binary representation of the calibration.
+     * 
+     * @return  size in bytes of the binary representation of the calibration.
+     */
+    public int binarySize();
+    
+    
+    /**
+     * Writes the binary representation of the calibration at the position of the buffer, and advances the position past it.
+     * 
+     * @param buffer    buffer with at least {@link #binarySize()} remaining bytes.
+     */
+    public void writeBinary( ByteBuffer buffer );
+    
+    
+    /**
+     * Reads the binary representation of the calibration from the position of the buffer, and advances the position past it.
+     * 
+     * @param buffer    buffer with the binary representation of the calibration.
+     * @throws IllegalArgumentException     if the buffer does not hold a valid binary representation of this type of calibration.
+     */
+    public void readBinary( ByteBuffer buffer );
+    
+    
     
     ////////////////////////////////////////////////////////////////
     // PUBLIC DEFAULT METHODS
     ////////////////////////////////////////////////////////////////
     
+    /**
+     * Converts a depth image into a point cloud stored in a reusable buffer.
+     * <p>
+     * The buffer is cleared, and the points of the valid pixels are stored in row-major order.
+     * No memory is allocated unless the buffer has to grow.
+     * <p>
+     * The image is read a row at a time with {@link DepthImage#depthRow(int, double[])} and {@link DepthImage#validityRow(int, long[])},
+     * and only the set bits of the validity bitmask are visited.
+     * 
+     * @param image     depth image.
+     * @param output    buffer in which the point cloud is stored.
+     */
+    public default void imageToPointCloud( DepthImage image , PointCloudBuffer output )
+    {
+        Measurement measurement = Instrumentation.beginDepthFrameConversion();
+        int rows = image.rows();
+        int cols = image.cols();
+        output.clear();
+        output.ensureCapacity( rows * cols );
+        double[] depth = output.rowDepth( cols );
+        long[] validity = output.rowValidity( image.validityRowLength() );
+        int n3 = PointCloudConversion.convertRows( this , image , 0 , rows , output.array() , 0 , depth , validity );
+        output.setSize( n3 / 3 );
+        Instrumentation.endDepthFrameConversion( measurement , Instrumentation.SERIAL , rows * cols , output.size() );
+    }
+    
+    
+    /**
+     * Converts a depth image into a point cloud stored in a reusable buffer, splitting the work among the threads of a pool.
+     * <p>
+     * The image is split into stripes of rows, and each stripe is converted into its own region of the buffer.
+     * The regions are then compacted, so the points are stored in the same row-major order as {@link #imageToPointCloud(DepthImage, PointCloudBuffer)}.
+     * Images with less than 65536 pixels, where scheduling the tasks costs more than it saves, are converted by the calling thread.
+     * <p>
+     * The calibration and the image are used by several threads at the same time, so
+     * {@link #pixelToPoint3(int, int, double, double[], int)}, {@link DepthImage#depthRow(int, double[])}, and {@link DepthImage#validityRow(int, long[])}
+     * must be safe to call concurrently.
+     * 
+     * @param image     depth image.
+     * @param output    buffer in which the point cloud is stored.
+     * @param pool  pool whose threads convert the image; null to convert it in the calling thread.
+     */
+    public default void imageToPointCloud( DepthImage image , PointCloudBuffer output , ForkJoinPool pool )
+    {
+        if( pool == null  ||  image.rows() * image.cols() < PointCloudConversion.MIN_PIXELS_FOR_PARALLEL_CONVERSION ) {
+            this.imageToPointCloud( image , output );
+        } else {
+            Measurement measurement = Instrumentation.beginDepthFrameConversion();
+            PointCloudConversion.convertParallel( this , image , output , pool );
+            Instrumentation.endDepthFrameConversion( measurement , Instrumentation.PARALLEL , image.rows() * image.cols() , output.size() );
+        }
+    }
+    
+    
+    /**
+     * Converts a depth image into a voxel-downsampled point cloud, with the centroid of the points of each occupied voxel.
+     * <p>
+     * Each valid pixel is deprojected with {@link #pixelToPoint3(int, int, double, double[], int)} and added straight to the grid,
+     * so the full point cloud is never stored, and memory scales with the number of occupied voxels.
+     * The centroids are stored in the order the voxels were first occupied, which follows the row-major order of the pixels.
+     * No memory is allocated unless the grid or the buffer have to grow.
+     * 
+     * @param image     depth image.
+     * @param grid  voxel grid used to accumulate the points; it is cleared first, and holds the points of the image afterwards.
+     * @param output    buffer in which the centroids are stored.
+     */
+    public default void imageToVoxelCentroids( DepthImage image , VoxelGrid grid , PointCloudBuffer output )
+    {
+        Measurement measurement = Instrumentation.beginDepthFrameConversion();
+        grid.clear();
+        double[] depth = output.rowDepth( image.cols() );
+        long[] validity = output.rowValidity( image.validityRowLength() );
+        PointCloudConversion.binRows( this , image , grid , depth , validity );
+        grid.centroids( output );
+        Instrumentation.endDepthFrameConversion( measurement , Instrumentation.VOXELS , image.rows() * image.cols() , output.size() );
+    }
+    
+    
     /**
      * Returns the point cloud that results from the raw depth image.
      * 
@@ -42,20 +168,9 @@ public interface DepthCameraCalibration
      */
     public default List<Vector3> imageToPointCloud( DepthImage image )
     {
-        List<Vector3> pointCloud = new ArrayList<Vector3>();
-        for( int i=0; i<image.rows(); i++ ) {
-            for( int j=0; j<image.cols(); j++ ) {
-                if( image.checkPixel( i , j ) ) {
-                    // Take pixel.
-                    double depthValue = image.depth( i , j );
-                    // Build the Vector3 from the (i,j)-th index and the depth value.
-                    Vector3 point = this.pixelToPoint3( j , i , depthValue );
-                    // Add the point to the point cloud.
-                    pointCloud.add( point );
-                }
-            }
-        }
-        return pointCloud;
+        PointCloudBuffer pointCloud = new PointCloudBuffer( image.rows() * image.cols() );
+        this.imageToPointCloud( image , pointCloud );
+        return pointCloud.toVector3List();
     }
     
 }
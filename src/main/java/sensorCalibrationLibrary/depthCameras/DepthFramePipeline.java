@@ -0,0 +1,481 @@
+package sensorCalibrationLibrary.depthCameras;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+
+
+
+/**
+ * Converts the raw frames of a depth camera into point clouds on a worker pool.
+ * <p>
+ * Frames are copied into a preallocated ring of slots, each with its own frame buffer, {@link DepthImage}, and {@link PointCloudBuffer}.
+ * The frames of a pipeline are converted one at a time and in order, by a task submitted to the executor when there are pending frames.
+ * The task converts at most as many frames as there are slots, and then resubmits itself if frames are still pending,
+ * so many pipelines (one per camera) can share the same executor without a fast camera holding a thread.
+ * Once the point cloud buffers have grown to the size of the frames, the pipeline does not allocate memory.
+ * <p>
+ * When all the slots hold pending frames, a new frame either waits for a free slot ({@link OverflowPolicy#BLOCK}),
+ * or replaces the oldest pending frame ({@link OverflowPolicy#DROP_OLDEST}).
+ * <p>
+ * The consumer receives the point cloud of each frame in a worker thread,
+ * and the point cloud is only valid until the consumer returns.
+ * An exception thrown by the conversion or the consumer is counted as a failed frame,
+ * while an {@link Error} propagates to the executor, and the frames still pending are converted once the next frame is submitted.
+ */
+public class DepthFramePipeline
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC NESTED CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * What to do with a new frame when all the slots hold pending frames.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Wait until a slot is free.
+         */
+        BLOCK ,
+        
+        /**
+         * Discard the oldest pending frame, and use its slot.
+         */
+        DROP_OLDEST
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Calibration used to convert the frames.
+     */
+    private final DepthCameraCalibration calibration;
+    
+    /**
+     * Executor that runs the conversion.
+     */
+    private final Executor executor;
+    
+    /**
+     * Receives the point cloud and the timestamp of each frame.
+     */
+    private final ObjLongConsumer<PointCloudBuffer> consumer;
+    
+    /**
+     * Policy used when all the slots hold pending frames.
+     */
+    private final OverflowPolicy policy;
+    
+    /**
+     * Size in bytes of a frame.
+     */
+    private final int frameBytes;
+    
+    /**
+     * Guards the state of the ring and the counters.
+     */
+    private final Object lock = new Object();
+    
+    /**
+     * Ring of pending slots, from the oldest at {@link #head}.
+     */
+    private final Slot[] pending;
+    
+    /**
+     * Stack of free slots.
+     */
+    private final Slot[] free;
+    
+    /**
+     * Index of the oldest pending slot.
+     */
+    private int head;
+    
+    /**
+     * Number of pending slots.
+     */
+    private int numberOfPending;
+    
+    /**
+     * Number of free slots.
+     */
+    private int numberOfFree;
+    
+    /**
+     * True if the conversion task has been submitted to the executor and has not finished.
+     */
+    private boolean draining;
+    
+    /**
+     * True if the pipeline does not accept more frames.
+     */
+    private boolean closed;
+    
+    /**
+     * Task that converts the pending frames.
+     */
+    private final Runnable drainTask = this::drain;
+    
+    /**
+     * Number of frames converted and passed to the consumer.
+     */
+    private long processedFrames;
+    
+    /**
+     * Number of frames discarded by {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    private long droppedFrames;
+    
+    /**
+     * Number of frames whose conversion or consumer threw an exception.
+     */
+    private long failedFrames;
+    
+    /**
+     * Last exception thrown by the conversion or the consumer.
+     */
+    private RuntimeException lastFailure;
+    
+    /**
+     * Sum of the latencies of the processed frames, in nanoseconds.
+     */
+    private long totalLatencyNanos;
+    
+    /**
+     * Largest latency of the processed frames, in nanoseconds.
+     */
+    private long maxLatencyNanos;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs a {@link DepthFramePipeline}.
+     * 
+     * @param calibration   calibration used to convert the frames.
+     * @param frameBytes    size in bytes of a frame.
+     * @param imageFactory  creates the depth image that wraps the frame buffer of a slot; called once per slot.
+     * @param capacity  maximum number of pending frames.
+     * @param policy    policy used when all the slots hold pending frames.
+     * @param executor  executor that runs the conversion; it may be shared with other pipelines.
+     * @param consumer  receives the point cloud and the timestamp of each frame.
+     * @throws IllegalArgumentException     if frameBytes or capacity are not positive.
+     */
+    public DepthFramePipeline( DepthCameraCalibration calibration , int frameBytes , Function<ByteBuffer,? extends DepthImage> imageFactory , int capacity , OverflowPolicy policy , Executor executor , ObjLongConsumer<PointCloudBuffer> consumer )
+    {
+        if( frameBytes < 1 ) {
+            throw new IllegalArgumentException( "DepthFramePipeline: the frame size must be positive." );
+        }
+        if( capacity < 1 ) {
+            throw new IllegalArgumentException( "DepthFramePipeline: the capacity must be positive." );
+        }
+        this.calibration = calibration;
+        this.frameBytes = frameBytes;
+        this.policy = policy;
+        this.executor = executor;
+        this.consumer = consumer;
+        // one more slot than pending frames, for the frame being converted
+        this.pending = new Slot[capacity];
+        this.free = new Slot[capacity+1];
+        for( int s=0; s<this.free.length; s++ ) {
+            ByteBuffer frame = ByteBuffer.allocateDirect( frameBytes );
+            DepthImage image = imageFactory.apply( frame );
+            this.free[s] = new Slot( frame , image , new PointCloudBuffer( image.rows() * image.cols() ) );
+        }
+        this.numberOfFree = this.free.length;
+        this.head = 0;
+        this.numberOfPending = 0;
+        this.draining = false;
+        this.closed = false;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Copies a frame into a free slot and schedules its conversion.
+     * <p>
+     * The frame is read from the position of the buffer, which is not modified.
+     * 
+     * @param frame     buffer whose remaining bytes start with the frame.
+     * @param timestamp     timestamp of the frame, passed to the consumer.
+     * @return  false if the frame replaced the oldest pending frame; true otherwise.
+     * @throws IllegalArgumentException     if the buffer holds less bytes than a frame.
+     * @throws IllegalStateException    if the pipeline is closed.
+     * @throws InterruptedException     if the thread is interrupted while waiting for a free slot.
+     */
+    public boolean submit( ByteBuffer frame , long timestamp ) throws InterruptedException
+    {
+        if( frame.remaining() < this.frameBytes ) {
+            throw new IllegalArgumentException( "DepthFramePipeline: the buffer is smaller than a frame." );
+        }
+        boolean dropped = false;
+        boolean schedule = false;
+        synchronized( this.lock ) {
+            if( this.policy == OverflowPolicy.BLOCK ) {
+                while( !this.closed  &&  this.numberOfPending == this.pending.length ) {
+                    this.lock.wait();
+                }
+            }
+            if( this.closed ) {
+                throw new IllegalStateException( "DepthFramePipeline: the pipeline is closed." );
+            }
+            Slot slot;
+            if( this.numberOfPending == this.pending.length ) {
+                slot = this.pending[this.head];
+                this.head = ( this.head + 1 ) % this.pending.length;
+                this.numberOfPending--;
+                this.droppedFrames++;
+                dropped = true;
+            } else {
+                slot = this.free[--this.numberOfFree];
+            }
+            slot.frame.put( 0 , frame , frame.position() , this.frameBytes );
+            slot.timestamp = timestamp;
+            slot.submitNanos = System.nanoTime();
+            this.pending[( this.head + this.numberOfPending ) % this.pending.length] = slot;
+            this.numberOfPending++;
+            if( !this.draining ) {
+                this.draining = true;
+                schedule = true;
+            }
+        }
+        if( schedule ) {
+            try {
+                this.executor.execute( this.drainTask );
+            } catch( RuntimeException e ) {
+                synchronized( this.lock ) {
+                    this.draining = false;
+                    this.lock.notifyAll();
+                }
+                throw e;
+            }
+        }
+        return !dropped;
+    }
+    
+    
+    /**
+     * Stops accepting frames.
+     * <p>
+     * The pending frames are still converted, and the threads waiting for a free slot throw {@link IllegalStateException}.
+     */
+    public void close()
+    {
+        synchronized( this.lock ) {
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+    }
+    
+    
+    /**
+     * Waits until all the pending frames have been converted.
+     * 
+     * @throws InterruptedException     if the thread is interrupted while waiting.
+     */
+    public void awaitIdle() throws InterruptedException
+    {
+        synchronized( this.lock ) {
+            while( this.draining ) {
+                this.lock.wait();
+            }
+        }
+    }
+    
+    
+    /**
+     * Returns the number of frames waiting to be converted.
+     * 
+     * @return  number of frames waiting to be converted.
+     */
+    public int getPendingFrames()
+    {
+        synchronized( this.lock ) {
+            return this.numberOfPending;
+        }
+    }
+    
+    
+    /**
+     * Returns the number of frames converted and passed to the consumer.
+     * 
+     * @return  number of frames converted and passed to the consumer.
+     */
+    public long getProcessedFrames()
+    {
+        synchronized( this.lock ) {
+            return this.processedFrames;
+        }
+    }
+    
+    
+    /**
+     * Returns the number of frames discarded by {@link OverflowPolicy#DROP_OLDEST}.
+     * 
+     * @return  number of discarded frames.
+     */
+    public long getDroppedFrames()
+    {
+        synchronized( this.lock ) {
+            return this.droppedFrames;
+        }
+    }
+    
+    
+    /**
+     * Returns the number of frames whose conversion or consumer threw an exception.
+     * 
+     * @return  number of failed frames.
+     */
+    public long getFailedFrames()
+    {
+        synchronized( this.lock ) {
+            return this.failedFrames;
+        }
+    }
+    
+    
+    /**
+     * Returns the last exception thrown by the conversion or the consumer.
+     * 
+     * @return  last exception thrown by the conversion or the consumer; null if there was none.
+     */
+    public Throwable getLastFailure()
+    {
+        synchronized( this.lock ) {
+            return this.lastFailure;
+        }
+    }
+    
+    
+    /**
+     * Returns the mean latency of the processed frames, from the call to {@link #submit(ByteBuffer, long)} until the consumer returns.
+     * 
+     * @return  mean latency in nanoseconds; 0 if no frame has been processed.
+     */
+    public double getMeanLatencyNanos()
+    {
+        synchronized( this.lock ) {
+            return ( this.processedFrames == 0 )?  0.0 : (double)this.totalLatencyNanos / this.processedFrames;
+        }
+    }
+    
+    
+    /**
+     * Returns the largest latency of the processed frames, from the call to {@link #submit(ByteBuffer, long)} until the consumer returns.
+     * 
+     * @return  largest latency in nanoseconds; 0 if no frame has been processed.
+     */
+    public long getMaxLatencyNanos()
+    {
+        synchronized( this.lock ) {
+            return this.maxLatencyNanos;
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Converts the pending frames until there are none left, or until as many frames as slots have been converted;
+     * in the latter case, the task is submitted again so that the other tasks of the executor take turns.
+     */
+    private void drain()
+    {
+        for( int k=0; k<this.pending.length; k++ ) {
+            Slot slot;
+            synchronized( this.lock ) {
+                if( this.numberOfPending == 0 ) {
+                    this.draining = false;
+                    this.lock.notifyAll();
+                    return;
+                }
+                slot = this.pending[this.head];
+                this.pending[this.head] = null;
+                this.head = ( this.head + 1 ) % this.pending.length;
+                this.numberOfPending--;
+            }
+            RuntimeException failure = null;
+            try {
+                this.calibration.imageToPointCloud( slot.image , slot.pointCloud );
+                this.consumer.accept( slot.pointCloud , slot.timestamp );
+            } catch( RuntimeException e ) {
+                failure = e;
+            } catch( Error e ) {
+                // we give the slot back and stop draining before the error propagates, so that no producer waits forever
+                synchronized( this.lock ) {
+                    this.free[this.numberOfFree++] = slot;
+                    this.draining = false;
+                    this.lock.notifyAll();
+                }
+                throw e;
+            }
+            long latency = System.nanoTime() - slot.submitNanos;
+            synchronized( this.lock ) {
+                if( failure == null ) {
+                    this.processedFrames++;
+                    this.totalLatencyNanos += latency;
+                    this.maxLatencyNanos = Math.max( this.maxLatencyNanos , latency );
+                } else {
+                    this.failedFrames++;
+                    this.lastFailure = failure;
+                }
+                this.free[this.numberOfFree++] = slot;
+                this.lock.notifyAll();
+            }
+        }
+        // frames are still pending, and draining is still true, so no other task is submitted meanwhile
+        try {
+            this.executor.execute( this.drainTask );
+        } catch( RuntimeException e ) {
+            synchronized( this.lock ) {
+                this.draining = false;
+                this.lock.notifyAll();
+            }
+            throw e;
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE NESTED CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Reusable storage of a frame and its point cloud.
+     */
+    private static class Slot
+    {
+        final ByteBuffer frame;
+        final DepthImage image;
+        final PointCloudBuffer pointCloud;
+        long timestamp;
+        long submitNanos;
+        
+        Slot( ByteBuffer frame , DepthImage image , PointCloudBuffer pointCloud )
+        {
+            this.frame = frame;
+            this.image = image;
+            this.pointCloud = pointCloud;
+        }
+    }
+    
+}
@@ -48,4 +48,62 @@ public interface DepthImage
      */
     public double depth( int i , int j );
     
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC DEFAULT METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the number of elements of the bitmask filled by {@link #validityRow(int, long[])}.
+     * 
+     * @return  number of 64-bit words needed to hold one bit per column.
+     */
+    public default int validityRowLength()
+    {
+        return ( this.cols() + 63 ) >>> 6;
+    }
+    
+    
+    /**
+     * Stores the depth values of a row of the image.
+     * <p>
+     * The values of the pixels that are not valid are unspecified, and callers must check them with {@link #validityRow(int, long[])}.
+     * This implementation only calls {@link #depth(int, int)} for the pixels for which {@link #checkPixel(int, int)} is true, and stores NaN for the rest.
+     * Implementations backed by a frame buffer are encouraged to override this method with a bulk decoding of the row.
+     * 
+     * @param i     row of the image.
+     * @param output    array with at least {@link #cols()} elements in which the depth value of each column is stored.
+     */
+    public default void depthRow( int i , double[] output )
+    {
+        int cols = this.cols();
+        for( int j=0; j<cols; j++ ) {
+            output[j] = ( this.checkPixel( i , j ) ) ? this.depth( i , j ) : Double.NaN;
+        }
+    }
+    
+    
+    /**
+     * Stores the validity bitmask of a row of the image.
+     * <p>
+     * Bit (j % 64) of output[j / 64] is set if {@link #checkPixel(int, int)} is true for the pixel (i,j), and the bits past the last column are cleared.
+     * 
+     * @param i     row of the image.
+     * @param output    array with at least {@link #validityRowLength()} elements in which the bitmask is stored.
+     */
+    public default void validityRow( int i , long[] output )
+    {
+        int cols = this.cols();
+        int words = ( cols + 63 ) >>> 6;
+        for( int w=0; w<words; w++ ) {
+            output[w] = 0L;
+        }
+        for( int j=0; j<cols; j++ ) {
+            if( this.checkPixel( i , j ) ) {
+                output[j >>> 6] |= ( 1L << j );
+            }
+        }
+    }
+    
 }
@@ -0,0 +1,238 @@
+package sensorCalibrationLibrary.depthCameras;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import numericalLibrary.types.Vector3;
+
+
+
+/**
+ * Point cloud stored in a reusable flat array of interleaved coordinates (x0,y0,z0,x1,y1,z1,...).
+ * <p>
+ * It is meant to be allocated once and filled with every new depth image,
+ * so that no objects are created per point.
+ * The array only grows when an image has more points than the current capacity.
+ */
+public class PointCloudBuffer
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Interleaved coordinates of the points.
+     */
+    private double[] xyz;
+    
+    /**
+     * Number of points in the buffer.
+     */
+    private int size;
+    
+    /**
+     * Depth values of a row of the image, used while filling the buffer.
+     */
+    private double[] rowDepth = new double[0];
+    
+    /**
+     * Validity bitmask of a row of the image, used while filling the buffer.
+     */
+    private long[] rowValidity = new long[0];
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link PointCloudBuffer}.
+     * 
+     * @param capacity  initial number of points that fit in the buffer.
+     */
+    public PointCloudBuffer( int capacity )
+    {
+        this.xyz = new double[3 * capacity];
+        this.size = 0;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the number of points in the buffer.
+     * 
+     * @return  number of points in the buffer.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+    
+    
+    /**
+     * Returns the number of points that fit in the buffer without growing it.
+     * 
+     * @return  number of points that fit in the buffer.
+     */
+    public int capacity()
+    {
+        return this.xyz.length / 3;
+    }
+    
+    
+    /**
+     * Removes all the points, keeping the capacity.
+     */
+    public void clear()
+    {
+        this.size = 0;
+    }
+    
+    
+    /**
+     * Grows the buffer, if needed, so that it can hold at least the given number of points.
+     * <p>
+     * The points in the buffer are kept.
+     * 
+     * @param capacity  number of points that the buffer must be able to hold.
+     */
+    public void ensureCapacity( int capacity )
+    {
+        if( 3 * capacity > this.xyz.length ) {
+            double[] newXyz = new double[3 * capacity];
+            System.arraycopy( this.xyz , 0 , newXyz , 0 , 3 * this.size );
+            this.xyz = newXyz;
+        }
+    }
+    
+    
+    /**
+     * Adds a point to the buffer, growing it if needed.
+     * 
+     * @param x     x-coordinate of the point.
+     * @param y     y-coordinate of the point.
+     * @param z     z-coordinate of the point.
+     */
+    public void add( double x , double y , double z )
+    {
+        if( 3 * this.size == this.xyz.length ) {
+            this.ensureCapacity( Math.max( 16 , 2 * this.size ) );
+        }
+        int i3 = 3 * this.size;
+        this.xyz[i3] = x;
+        this.xyz[i3+1] = y;
+        this.xyz[i3+2] = z;
+        this.size++;
+    }
+    
+    
+    /**
+     * Returns the x-coordinate of the i-th point.
+     * 
+     * @param i     index of the point.
+     * @return  x-coordinate of the i-th point.
+     */
+    public double x( int i )
+    {
+        return this.xyz[3*i];
+    }
+    
+    
+    /**
+     * Returns the y-coordinate of the i-th point.
+     * 
+     * @param i     index of the point.
+     * @return  y-coordinate of the i-th point.
+     */
+    public double y( int i )
+    {
+        return this.xyz[3*i+1];
+    }
+    
+    
+    /**
+     * Returns the z-coordinate of the i-th point.
+     * 
+     * @param i     index of the point.
+     * @return  z-coordinate of the i-th point.
+     */
+    public double z( int i )
+    {
+        return this.xyz[3*i+2];
+    }
+    
+    
+    /**
+     * Returns the array that backs the buffer.
+     * <p>
+     * Only the first 3 * {@link #size()} elements hold points.
+     * The array is replaced when the buffer grows, so it should not be kept after adding points.
+     * 
+     * @return  array with the interleaved coordinates of the points (x0,y0,z0,x1,y1,z1,...).
+     */
+    public double[] array()
+    {
+        return this.xyz;
+    }
+    
+    
+    /**
+     * Returns the points as a list of {@link Vector3}.
+     * 
+     * @return  new list with a new {@link Vector3} for each point.
+     */
+    public List<Vector3> toVector3List()
+    {
+        List<Vector3> points = new ArrayList<Vector3>( this.size );
+        for( int i=0; i<this.size; i++ ) {
+            int i3 = 3 * i;
+            points.add( Vector3.fromComponents( this.xyz[i3] , this.xyz[i3+1] , this.xyz[i3+2] ) );
+        }
+        return points;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Sets the number of points after they have been written directly in {@link #array()}.
+     */
+    void setSize( int size )
+    {
+        this.size = size;
+    }
+    
+    
+    /**
+     * Returns an array with at least the given length to hold the depth values of a row of the image.
+     */
+    double[] rowDepth( int cols )
+    {
+        if( this.rowDepth.length < cols ) {
+            this.rowDepth = new double[cols];
+        }
+        return this.rowDepth;
+    }
+    
+    
+    /**
+     * Returns an array with at least the given length to hold the validity bitmask of a row of the image.
+     */
+    long[] rowValidity( int words )
+    {
+        if( this.rowValidity.length < words ) {
+            this.rowValidity = new long[words];
+        }
+        return this.rowValidity;
+    }
+    
+}
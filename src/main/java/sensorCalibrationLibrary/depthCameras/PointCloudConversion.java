@@ -0,0 +1,179 @@
+package sensorCalibrationLibrary.depthCameras;
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+
+/**
+ * Loops used by {@link DepthCameraCalibration} to convert depth images into point clouds.
+ */
+final class PointCloudConversion
+{
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Minimum number of pixels of an image for its conversion to be split among the threads of a pool.
+     * <p>
+     * Smaller images are converted faster by the calling thread than the tasks can be scheduled.
+     */
+    static final int MIN_PIXELS_FOR_PARALLEL_CONVERSION = 1 << 16;
+    
+    /**
+     * Number of stripes per thread of the pool, so that threads that finish early can take work from the others.
+     */
+    private static final int STRIPES_PER_THREAD = 4;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    private PointCloudConversion()
+    {
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Converts the rows [rowStart,rowEnd) of the image, storing the points in row-major order from xyz[n3].
+     * 
+     * @param depth     array with at least {@link DepthImage#cols()} elements used to hold the depth values of a row.
+     * @param validity  array with at least {@link DepthImage#validityRowLength()} elements used to hold the validity bitmask of a row.
+     * @return  index of xyz that follows the last stored point.
+     */
+    static int convertRows( DepthCameraCalibration calibration , DepthImage image , int rowStart , int rowEnd , double[] xyz , int n3 , double[] depth , long[] validity )
+    {
+        int words = ( image.cols() + 63 ) >>> 6;
+        for( int i=rowStart; i<rowEnd; i++ ) {
+            image.depthRow( i , depth );
+            image.validityRow( i , validity );
+            for( int w=0; w<words; w++ ) {
+                long bits = validity[w];
+                while( bits != 0L ) {
+                    int j = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+                    calibration.pixelToPoint3( j , i , depth[j] , xyz , n3 );
+                    n3 += 3;
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return n3;
+    }
+    
+    
+    /**
+     * Deprojects the valid pixels of the image, and adds their points to the voxel grid.
+     * 
+     * @param depth     array with at least {@link DepthImage#cols()} elements used to hold the depth values of a row.
+     * @param validity  array with at least {@link DepthImage#validityRowLength()} elements used to hold the validity bitmask of a row.
+     */
+    static void binRows( DepthCameraCalibration calibration , DepthImage image , VoxelGrid grid , double[] depth , long[] validity )
+    {
+        int rows = image.rows();
+        int words = ( image.cols() + 63 ) >>> 6;
+        double[] point = grid.point;
+        for( int i=0; i<rows; i++ ) {
+            image.depthRow( i , depth );
+            image.validityRow( i , validity );
+            for( int w=0; w<words; w++ ) {
+                long bits = validity[w];
+                while( bits != 0L ) {
+                    int j = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+                    calibration.pixelToPoint3( j , i , depth[j] , point , 0 );
+                    grid.add( point[0] , point[1] , point[2] );
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+    
+    
+    /**
+     * Converts the image splitting its rows into stripes that are converted by the threads of the pool.
+     * <p>
+     * Each stripe stores its points in the region of the buffer that starts at the position of its first pixel,
+     * so the stripes never overlap.
+     * The regions are then moved down to close the gaps left by the invalid pixels, which keeps the row-major order.
+     */
+    static void convertParallel( DepthCameraCalibration calibration , DepthImage image , PointCloudBuffer output , ForkJoinPool pool )
+    {
+        int rows = image.rows();
+        int cols = image.cols();
+        output.clear();
+        output.ensureCapacity( rows * cols );
+        double[] xyz = output.array();
+        int numberOfStripes = Math.min( rows , STRIPES_PER_THREAD * pool.getParallelism() );
+        int rowsPerStripe = ( rows + numberOfStripes - 1 ) / numberOfStripes;
+        numberOfStripes = ( rows + rowsPerStripe - 1 ) / rowsPerStripe;
+        int[] stripeEnd = new int[numberOfStripes];
+        pool.invoke( new StripeAction( calibration , image , xyz , rowsPerStripe , stripeEnd , 0 , numberOfStripes ) );
+        int n3 = stripeEnd[0];
+        for( int s=1; s<numberOfStripes; s++ ) {
+            int stripeStart = 3 * s * rowsPerStripe * cols;
+            int length = stripeEnd[s] - stripeStart;
+            System.arraycopy( xyz , stripeStart , xyz , n3 , length );
+            n3 += length;
+        }
+        output.setSize( n3 / 3 );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE NESTED CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Converts the stripes [from,to), splitting them in halves until a single stripe is left.
+     */
+    private static class StripeAction
+        extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final DepthCameraCalibration calibration;
+        private final DepthImage image;
+        private final double[] xyz;
+        private final int rowsPerStripe;
+        private final int[] stripeEnd;
+        private final int from;
+        private final int to;
+        
+        StripeAction( DepthCameraCalibration calibration , DepthImage image , double[] xyz , int rowsPerStripe , int[] stripeEnd , int from , int to )
+        {
+            this.calibration = calibration;
+            this.image = image;
+            this.xyz = xyz;
+            this.rowsPerStripe = rowsPerStripe;
+            this.stripeEnd = stripeEnd;
+            this.from = from;
+            this.to = to;
+        }
+        
+        protected void compute()
+        {
+            if( this.to - this.from == 1 ) {
+                int rowStart = this.from * this.rowsPerStripe;
+                int rowEnd = Math.min( rowStart + this.rowsPerStripe , this.image.rows() );
+                int cols = this.image.cols();
+                double[] depth = new double[cols];
+                long[] validity = new long[this.image.validityRowLength()];
+                this.stripeEnd[this.from] = convertRows( this.calibration , this.image , rowStart , rowEnd , this.xyz , 3 * rowStart * cols , depth , validity );
+            } else {
+                int middle = ( this.from + this.to ) >>> 1;
+                invokeAll( new StripeAction( this.calibration , this.image , this.xyz , this.rowsPerStripe , this.stripeEnd , this.from , middle ) ,
+                           new StripeAction( this.calibration , this.image , this.xyz , this.rowsPerStripe , this.stripeEnd , middle , this.to ) );
+            }
+        }
+    }
+    
+}
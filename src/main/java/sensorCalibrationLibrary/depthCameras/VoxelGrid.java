@@ -0,0 +1,226 @@
+package sensorCalibrationLibrary.depthCameras;
+
+
+import java.util.Arrays;
+
+import sensorCalibrationLibrary.LongIndexMap;
+
+
+
+/**
+ * Sparse grid of cubic voxels that accumulates the centroid of the points that fall in each voxel.
+ * <p>
+ * The occupied voxels are indexed by their packed coordinates in a {@link LongIndexMap},
+ * with the sums of the coordinates in flat arrays, so memory scales with the number of occupied voxels and no objects are created per point.
+ * The grid is meant to be reused: {@link #clear()} only visits the occupied voxels, and keeps the capacity.
+ * <p>
+ * Each voxel coordinate is stored in 21 bits, so the points must be within 2^20 voxels of the origin.
+ */
+public class VoxelGrid
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of bits of each packed voxel coordinate.
+     */
+    private static final int BITS_PER_COORDINATE = 21;
+    
+    /**
+     * Mask of a packed voxel coordinate.
+     */
+    private static final long COORDINATE_MASK = ( 1L << BITS_PER_COORDINATE ) - 1;
+    
+    /**
+     * Largest absolute value of a voxel coordinate.
+     */
+    private static final int MAX_COORDINATE = 1 << ( BITS_PER_COORDINATE - 1 );
+    
+    /**
+     * Initial number of voxels that fit in the grid.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Edge length of the voxels.
+     */
+    private final double voxelSize;
+    
+    /**
+     * Inverse of {@link #voxelSize}.
+     */
+    private final double inverseVoxelSize;
+    
+    /**
+     * Index of each occupied voxel by its packed coordinates, in the order the voxels were first occupied.
+     */
+    private final LongIndexMap voxels;
+    
+    /**
+     * Sums of the coordinates of the points of each occupied voxel.
+     */
+    private double[] sums;
+    
+    /**
+     * Number of points of each occupied voxel.
+     */
+    private int[] counts;
+    
+    /**
+     * Scratch array in which a point is deprojected before being added.
+     */
+    final double[] point = new double[3];
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link VoxelGrid}.
+     * 
+     * @param voxelSize     edge length of the voxels, in the units of the points.
+     * @throws IllegalArgumentException     if voxelSize is not positive and finite.
+     */
+    public VoxelGrid( double voxelSize )
+    {
+        if( !( voxelSize > 0.0 )  ||  Double.isInfinite( voxelSize ) ) {
+            throw new IllegalArgumentException( "VoxelGrid: the voxel size must be positive and finite." );
+        }
+        this.voxelSize = voxelSize;
+        this.inverseVoxelSize = 1.0 / voxelSize;
+        this.voxels = new LongIndexMap( INITIAL_CAPACITY );
+        this.sums = new double[3 * INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the edge length of the voxels.
+     * 
+     * @return  edge length of the voxels.
+     */
+    public double getVoxelSize()
+    {
+        return this.voxelSize;
+    }
+    
+    
+    /**
+     * Returns the number of occupied voxels.
+     * 
+     * @return  number of occupied voxels.
+     */
+    public int size()
+    {
+        return this.voxels.size();
+    }
+    
+    
+    /**
+     * Removes all the points, keeping the capacity.
+     */
+    public void clear()
+    {
+        this.voxels.clear();
+    }
+    
+    
+    /**
+     * Adds a point to the voxel that contains it.
+     * 
+     * @param x     x-coordinate of the point.
+     * @param y     y-coordinate of the point.
+     * @param z     z-coordinate of the point.
+     * @throws IllegalArgumentException     if the point is too far from the origin for the voxel size.
+     */
+    public void add( double x , double y , double z )
+    {
+        int size = this.voxels.size();
+        int v = this.voxels.add( this.key( x , y , z ) );
+        int v3 = 3 * v;
+        if( v < size ) {
+            this.sums[v3] += x;
+            this.sums[v3+1] += y;
+            this.sums[v3+2] += z;
+            this.counts[v]++;
+            return;
+        }
+        if( v == this.counts.length ) {
+            this.grow();
+        }
+        this.sums[v3] = x;
+        this.sums[v3+1] = y;
+        this.sums[v3+2] = z;
+        this.counts[v] = 1;
+    }
+    
+    
+    /**
+     * Stores the centroid of the points of each occupied voxel, in the order the voxels were first occupied.
+     * 
+     * @param output    buffer in which the centroids are stored; it is cleared first.
+     */
+    public void centroids( PointCloudBuffer output )
+    {
+        int size = this.voxels.size();
+        output.clear();
+        output.ensureCapacity( size );
+        double[] xyz = output.array();
+        for( int v=0; v<size; v++ ) {
+            int v3 = 3 * v;
+            double count = this.counts[v];
+            xyz[v3] = this.sums[v3] / count;
+            xyz[v3+1] = this.sums[v3+1] / count;
+            xyz[v3+2] = this.sums[v3+2] / count;
+        }
+        output.setSize( size );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the packed coordinates of the voxel that contains the point.
+     */
+    private long key( double x , double y , double z )
+    {
+        double ix = Math.floor( x * this.inverseVoxelSize );
+        double iy = Math.floor( y * this.inverseVoxelSize );
+        double iz = Math.floor( z * this.inverseVoxelSize );
+        if( !( Math.abs( ix ) < MAX_COORDINATE  &&  Math.abs( iy ) < MAX_COORDINATE  &&  Math.abs( iz ) < MAX_COORDINATE ) ) {
+            throw new IllegalArgumentException( "VoxelGrid: the point is out of the range of the grid." );
+        }
+        return ( ( (long)ix & COORDINATE_MASK ) << ( 2 * BITS_PER_COORDINATE ) )
+             | ( ( (long)iy & COORDINATE_MASK ) << BITS_PER_COORDINATE )
+             | ( (long)iz & COORDINATE_MASK );
+    }
+    
+    
+    /**
+     * Grows the sums and counts to the capacity of {@link #voxels}.
+     */
+    private void grow()
+    {
+        int capacity = this.voxels.capacity();
+        this.sums = Arrays.copyOf( this.sums , 3 * capacity );
+        this.counts = Arrays.copyOf( this.counts , capacity );
+    }
+    
+}
@@ -1,14 +1,23 @@
 package sensorCalibrationLibrary.depthCameras.maixSenseA010;
 
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
 import numericalLibrary.types.MatrixReal;
 import numericalLibrary.types.Vector3;
+import sensorCalibrationLibrary.BinaryCalibrationFormat;
 import sensorCalibrationLibrary.depthCameras.DepthCameraCalibration;
 
 
 
 /**
- * Implements the default calibration provided in the MaixSense-A010 ToF camera datasheet.
+ * Implements the pinhole model of the MaixSense-A010 ToF camera.
+ * <p>
+ * The model has 6 parameters: the horizontal and vertical fields of view [rad], the principal point as a fraction of the image size,
+ * and the scale and bias [m] applied to the depth values.
+ * By default they take the values provided in the datasheet (70 and 60 degrees, the center of the image, and no depth correction),
+ * and they can be estimated with {@link MaixSenseA010IntrinsicCalibrator}.
  * 
  * @see <a href>https://www.marutsu.co.jp/contents/shop/marutsu/datasheet/switchscience_DFROBOT-SEN0581.pdf</a>
  */
@@ -37,6 +46,11 @@ public class MaixSenseA010DefaultCalibration
      */
     private static final double FOV_V = 60 * Math.PI/180.0;
     
+    /**
+     * Number of parameters of the model.
+     */
+    private static final int NUMBER_OF_PARAMETERS = 6;
+    
     
     ////////////////////////////////////////////////////////////////
     // PRIVATE DERIVED CONSTANTS
@@ -54,6 +68,19 @@ public class MaixSenseA010DefaultCalibration
     
     
     
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Ray tables for each image size, shared by all the instances.
+     * <p>
+     * The A010 is used with a few binning modes (100x100, 50x50, 25x25), so there are only a few tables.
+     */
+    private static final ConcurrentHashMap<Integer,RayTable> RAY_TABLES = new ConcurrentHashMap<Integer,RayTable>();
+    
+    
+    
     ////////////////////////////////////////////////////////////////
     // PUBLIC VARIABLES
     ////////////////////////////////////////////////////////////////
@@ -63,6 +90,51 @@ public class MaixSenseA010DefaultCalibration
      */
     private int imageRowsCols;
     
+    /**
+     * Field of view of the camera in the horizontal direction [rad].
+     */
+    private double fovH = FOV_H;
+    
+    /**
+     * Field of view of the camera in the vertical direction [rad].
+     */
+    private double fovV = FOV_V;
+    
+    /**
+     * Column of the principal point as a fraction of the number of columns.
+     */
+    private double principalPointX = 0.5;
+    
+    /**
+     * Row of the principal point as a fraction of the number of rows.
+     */
+    private double principalPointY = 0.5;
+    
+    /**
+     * Scale applied to the depth values.
+     */
+    private double depthScale = 1.0;
+    
+    /**
+     * Bias added to the scaled depth values [m].
+     */
+    private double depthBias = 0.0;
+    
+    /**
+     * Size of the projection screen in the x-direction when such screen is 1 meter apart from the camera focus.
+     */
+    private double xScreenSizeAt1m = X_SCREEN_SIZE_AT_1M;
+    
+    /**
+     * Size of the projection screen in the y-direction when such screen is 1 meter apart from the camera focus.
+     */
+    private double yScreenSizeAt1m = Y_SCREEN_SIZE_AT_1M;
+    
+    /**
+     * Ray table for {@link #imageRowsCols}.
+     */
+    private RayTable rays;
+    
     
     
     ////////////////////////////////////////////////////////////////
@@ -75,10 +147,15 @@ public class MaixSenseA010DefaultCalibration
      * Since MaixSenseA010Image are always square images, the input argument is the number of pixels along a side of the image.
      * 
      * @param numberOfRowsAndColumns    rows or columns of the square image that provides the depth values.
+     * @throws IllegalArgumentException     if numberOfRowsAndColumns is not positive.
      */
     public void setImageSize( int numberOfRowsAndColumns )
     {
+        if( numberOfRowsAndColumns <= 0 ) {
+            throw new IllegalArgumentException( "MaixSenseA010DefaultCalibration: the image size must be positive." );
+        }
         this.imageRowsCols = numberOfRowsAndColumns;
+        this.updateRays();
     }
     
     
@@ -88,37 +165,206 @@ public class MaixSenseA010DefaultCalibration
     public Vector3 pixelToPoint3( double xImagePlane , double yImagePlane , double depthValue )
     {
         Vector3 output = Vector3.fromComponents(
-                (xImagePlane-0.5*imageRowsCols)/imageRowsCols * X_SCREEN_SIZE_AT_1M ,
-                (yImagePlane-0.5*imageRowsCols)/imageRowsCols * Y_SCREEN_SIZE_AT_1M ,
+                (xImagePlane-this.principalPointX*imageRowsCols)/imageRowsCols * this.xScreenSizeAt1m ,
+                (yImagePlane-this.principalPointY*imageRowsCols)/imageRowsCols * this.yScreenSizeAt1m ,
                 1.0 );
-        output.scaleInplace( depthValue );
+        output.scaleInplace( this.depthScale * depthValue + this.depthBias );
         return output;
     }
     
     
     /**
      * {@inheritDoc}
+     * <p>
+     * The ray of the pixel is taken from the table precomputed in {@link #setImageSize(int)}.
+     * If the image size is not set, or the pixel is out of the image, the point is computed as in {@link #pixelToPoint3(double, double, double)}.
+     */
+    public void pixelToPoint3( int column , int row , double depthValue , double[] output , int offset )
+    {
+        RayTable rays = this.rays;
+        if( rays == null  ||  column < 0  ||  column >= rays.x.length  ||  row < 0  ||  row >= rays.y.length ) {
+            DepthCameraCalibration.super.pixelToPoint3( column , row , depthValue , output , offset );
+            return;
+        }
+        double z = this.depthScale * depthValue + this.depthBias;
+        output[offset] = rays.x[column] * z;
+        output[offset+1] = rays.y[row] * z;
+        output[offset+2] = z;
+    }
+    
+    
+    /**
+     * Sets the parameters of the model.
+     * 
+     * @param theta     6x1 matrix with the horizontal and vertical fields of view [rad], the column and row of the principal point
+     *                  as fractions of the image size, and the scale and bias [m] of the depth values.
+     * @throws IllegalArgumentException     if theta is not a 6x1 matrix, or the fields of view are not in (0,pi).
      */
     public void setParameters( MatrixReal theta )
     {
+        if( theta.rows() != NUMBER_OF_PARAMETERS  ||  theta.cols() != 1 ) {
+            throw new IllegalArgumentException( "MaixSenseA010DefaultCalibration: the parameters must be a " + NUMBER_OF_PARAMETERS + "x1 matrix." );
+        }
+        this.set( theta.entry( 0 , 0 ) , theta.entry( 1 , 0 ) , theta.entry( 2 , 0 ) , theta.entry( 3 , 0 ) , theta.entry( 4 , 0 ) , theta.entry( 5 , 0 ) );
     }
     
     
     /**
-     * {@inheritDoc}
+     * Returns the number of parameters of the model.
+     * 
+     * @return  number of parameters of the model.
      */
     public int numberOfParameters()
     {
-        return 0;
+        return NUMBER_OF_PARAMETERS;
     }
     
     
     /**
-     * {@inheritDoc}
+     * Returns the parameters of the model, in the order described in {@link #setParameters(MatrixReal)}.
+     * 
+     * @return  6x1 matrix with the parameters of the model.
      */
     public MatrixReal getParameters()
     {
-        return null;
+        MatrixReal theta = MatrixReal.empty( NUMBER_OF_PARAMETERS , 1 );
+        theta.setEntry( 0 , 0 , this.fovH );
+        theta.setEntry( 1 , 0 , this.fovV );
+        theta.setEntry( 2 , 0 , this.principalPointX );
+        theta.setEntry( 3 , 0 , this.principalPointY );
+        theta.setEntry( 4 , 0 , this.depthScale );
+        theta.setEntry( 5 , 0 , this.depthBias );
+        return theta;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int binarySize()
+    {
+        // header, image size (padded to 8 bytes), and parameters
+        return BinaryCalibrationFormat.HEADER_SIZE + 8 + 8 * NUMBER_OF_PARAMETERS;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void writeBinary( ByteBuffer buffer )
+    {
+        ByteBuffer record = BinaryCalibrationFormat.beginRecord( buffer );
+        record.putInt( this.imageRowsCols );
+        record.putInt( 0 );
+        record.putDouble( this.fovH );
+        record.putDouble( this.fovV );
+        record.putDouble( this.principalPointX );
+        record.putDouble( this.principalPointY );
+        record.putDouble( this.depthScale );
+        record.putDouble( this.depthBias );
+        BinaryCalibrationFormat.endRecord( buffer , record , BinaryCalibrationFormat.TYPE_MAIXSENSE_A010_DEFAULT );
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void readBinary( ByteBuffer buffer )
+    {
+        ByteBuffer record = BinaryCalibrationFormat.beginReading( buffer , BinaryCalibrationFormat.TYPE_MAIXSENSE_A010_DEFAULT );
+        if( record.remaining() != 8 + 8 * NUMBER_OF_PARAMETERS ) {
+            throw new IllegalArgumentException( "MaixSenseA010DefaultCalibration: wrong calibration." );
+        }
+        int imageRowsCols = record.getInt();
+        record.getInt();
+        if( imageRowsCols < 0 ) {
+            throw new IllegalArgumentException( "MaixSenseA010DefaultCalibration: wrong calibration." );
+        }
+        this.set( record.getDouble() , record.getDouble() , record.getDouble() , record.getDouble() , record.getDouble() , record.getDouble() );
+        // a calibration whose image size was never set is written with size 0
+        this.imageRowsCols = imageRowsCols;
+        this.updateRays();
+        BinaryCalibrationFormat.endReading( buffer , record );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Sets the parameters of the model, and updates the ray table.
+     */
+    private void set( double fovH , double fovV , double principalPointX , double principalPointY , double depthScale , double depthBias )
+    {
+        if( !( fovH > 0.0  &&  fovH < Math.PI  &&  fovV > 0.0  &&  fovV < Math.PI ) ) {
+            throw new IllegalArgumentException( "MaixSenseA010DefaultCalibration: the fields of view must be in (0,pi)." );
+        }
+        this.fovH = fovH;
+        this.fovV = fovV;
+        this.principalPointX = principalPointX;
+        this.principalPointY = principalPointY;
+        this.depthScale = depthScale;
+        this.depthBias = depthBias;
+        this.xScreenSizeAt1m = 2.0 * Math.tan( fovH / 2.0 );
+        this.yScreenSizeAt1m = 2.0 * Math.tan( fovV / 2.0 );
+        this.updateRays();
+    }
+    
+    
+    /**
+     * Updates the ray table with the image size and the parameters of the model.
+     * <p>
+     * The tables of the datasheet parameters are shared by all the instances.
+     */
+    private void updateRays()
+    {
+        if( this.imageRowsCols <= 0 ) {
+            this.rays = null;
+            return;
+        }
+        if( this.fovH == FOV_H  &&  this.fovV == FOV_V  &&  this.principalPointX == 0.5  &&  this.principalPointY == 0.5 ) {
+            this.rays = RAY_TABLES.computeIfAbsent( this.imageRowsCols , n -> new RayTable( n , X_SCREEN_SIZE_AT_1M , Y_SCREEN_SIZE_AT_1M , 0.5 , 0.5 ) );
+        } else {
+            this.rays = new RayTable( this.imageRowsCols , this.xScreenSizeAt1m , this.yScreenSizeAt1m , this.principalPointX , this.principalPointY );
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE NESTED CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Directions of the rays of the pixels of a square image, with unit z-component.
+     * <p>
+     * The x-component only depends on the column, and the y-component only on the row,
+     * so the table of a NxN image holds 2N values instead of N^2.
+     * They are computed as in {@link MaixSenseA010DefaultCalibration#pixelToPoint3(double, double, double)}, so the results are identical.
+     */
+    private static class RayTable
+    {
+        /**
+         * x-component of the ray of each column.
+         */
+        final double[] x;
+        
+        /**
+         * y-component of the ray of each row.
+         */
+        final double[] y;
+        
+        RayTable( int imageRowsCols , double xScreenSizeAt1m , double yScreenSizeAt1m , double principalPointX , double principalPointY )
+        {
+            this.x = new double[imageRowsCols];
+            this.y = new double[imageRowsCols];
+            for( int k=0; k<imageRowsCols; k++ ) {
+                this.x[k] = ( k - principalPointX*imageRowsCols )/imageRowsCols * xScreenSizeAt1m;
+                this.y[k] = ( k - principalPointY*imageRowsCols )/imageRowsCols * yScreenSizeAt1m;
+            }
+        }
     }
     
 }
@@ -0,0 +1,341 @@
+package sensorCalibrationLibrary.depthCameras.maixSenseA010;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import sensorCalibrationLibrary.depthCameras.DepthImage;
+
+
+
+/**
+ * Depth image that wraps a raw frame of the MaixSense-A010 ToF camera without copying it.
+ * <p>
+ * The A010 delivers one unsigned byte per pixel, in row-major order, quantized according to its QUANTIZE_UNIT setting:
+ * <ul>
+ * <li> unit 0: the depth is (p/5.1)^2 millimeters, which gives finer steps near the camera.
+ * <li> unit 1 to 9: the depth is p*unit millimeters.
+ * </ul>
+ * The value 0 means that there is no measurement, and 255 that the pixel is saturated or out of range; both are not valid.
+ * <p>
+ * Frames that have already been expanded to unsigned 16-bit millimeters can be wrapped as a {@link ShortBuffer},
+ * in which case 0 means no measurement and 65535 saturation.
+ * <p>
+ * The frame is read with absolute indexing from the position of the buffer at the time it is set, so the buffer is never modified.
+ * It can be replaced with {@link #setFrame(ByteBuffer)} or {@link #setFrame(ShortBuffer)} without allocating memory,
+ * and its content must not change while the image is in use.
+ * Depth values are given in meters.
+ * 
+ * @see <a href>https://www.marutsu.co.jp/contents/shop/marutsu/datasheet/switchscience_DFROBOT-SEN0581.pdf</a>
+ */
+public class MaixSenseA010Image
+    implements DepthImage
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Largest QUANTIZE_UNIT setting of the A010.
+     */
+    public static final int MAX_QUANTIZATION_UNIT = 9;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Byte value of the pixels without measurement.
+     */
+    private static final int NO_MEASUREMENT_8 = 0;
+    
+    /**
+     * Byte value of the saturated pixels.
+     */
+    private static final int SATURATED_8 = 0xFF;
+    
+    /**
+     * 16-bit value of the pixels without measurement.
+     */
+    private static final int NO_MEASUREMENT_16 = 0;
+    
+    /**
+     * 16-bit value of the saturated pixels.
+     */
+    private static final int SATURATED_16 = 0xFFFF;
+    
+    /**
+     * Depth in meters of each byte value, for each quantization unit.
+     */
+    private static final double[][] DEPTH_TABLES = depthTables();
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of rows or columns of the square image.
+     */
+    private final int rowsCols;
+    
+    /**
+     * Depth in meters of each byte value.
+     */
+    private final double[] depthTable;
+    
+    /**
+     * Frame of 8-bit pixels; null if the frame has 16-bit pixels.
+     */
+    private ByteBuffer frame8;
+    
+    /**
+     * Frame of 16-bit pixels; null if the frame has 8-bit pixels.
+     */
+    private ShortBuffer frame16;
+    
+    /**
+     * Index of the first pixel in the frame.
+     */
+    private int base;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs a {@link MaixSenseA010Image} without frame.
+     * 
+     * @param rowsCols  number of rows or columns of the square image (100, 50, or 25 depending on the binning).
+     * @param quantizationUnit  QUANTIZE_UNIT setting of the camera, used to decode 8-bit frames.
+     */
+    public MaixSenseA010Image( int rowsCols , int quantizationUnit )
+    {
+        if( rowsCols <= 0 ) {
+            throw new IllegalArgumentException( "MaixSenseA010Image: the number of rows and columns must be positive." );
+        }
+        if( quantizationUnit < 0  ||  quantizationUnit > MAX_QUANTIZATION_UNIT ) {
+            throw new IllegalArgumentException( "MaixSenseA010Image: the quantization unit must be in [0," + MAX_QUANTIZATION_UNIT + "]." );
+        }
+        this.rowsCols = rowsCols;
+        this.depthTable = DEPTH_TABLES[quantizationUnit];
+        this.frame8 = null;
+        this.frame16 = null;
+        this.base = 0;
+    }
+    
+    
+    /**
+     * Constructs a {@link MaixSenseA010Image} that wraps a frame of 8-bit pixels.
+     * 
+     * @param frame     frame whose remaining bytes start with the pixels of the image.
+     * @param rowsCols  number of rows or columns of the square image (100, 50, or 25 depending on the binning).
+     * @param quantizationUnit  QUANTIZE_UNIT setting of the camera.
+     */
+    public MaixSenseA010Image( ByteBuffer frame , int rowsCols , int quantizationUnit )
+    {
+        this( rowsCols , quantizationUnit );
+        this.setFrame( frame );
+    }
+    
+    
+    /**
+     * Constructs a {@link MaixSenseA010Image} that wraps a frame of 16-bit pixels in millimeters.
+     * 
+     * @param frame     frame whose remaining elements start with the pixels of the image.
+     * @param rowsCols  number of rows or columns of the square image (100, 50, or 25 depending on the binning).
+     */
+    public MaixSenseA010Image( ShortBuffer frame , int rowsCols )
+    {
+        this( rowsCols , 0 );
+        this.setFrame( frame );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Sets the frame of 8-bit pixels wrapped by the image.
+     * 
+     * @param frame     frame whose remaining bytes start with the pixels of the image.
+     */
+    public void setFrame( ByteBuffer frame )
+    {
+        if( frame.remaining() < this.rowsCols * this.rowsCols ) {
+            throw new IllegalArgumentException( "MaixSenseA010Image: the frame is smaller than the image." );
+        }
+        this.frame8 = frame;
+        this.frame16 = null;
+        this.base = frame.position();
+    }
+    
+    
+    /**
+     * Sets the frame of 16-bit pixels in millimeters wrapped by the image.
+     * 
+     * @param frame     frame whose remaining elements start with the pixels of the image.
+     */
+    public void setFrame( ShortBuffer frame )
+    {
+        if( frame.remaining() < this.rowsCols * this.rowsCols ) {
+            throw new IllegalArgumentException( "MaixSenseA010Image: the frame is smaller than the image." );
+        }
+        this.frame8 = null;
+        this.frame16 = frame;
+        this.base = frame.position();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int rows()
+    {
+        return this.rowsCols;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int cols()
+    {
+        return this.rowsCols;
+    }
+    
+    
+    /**
+     * Returns the raw value of the pixel located at (i,j), as stored in the frame.
+     * 
+     * @param i     row of the pixel.
+     * @param j     column of the pixel.
+     * @return  raw value of the pixel located at (i,j).
+     */
+    public int rawValue( int i , int j )
+    {
+        int index = this.base + i * this.rowsCols + j;
+        if( this.frame8 != null ) {
+            return ( this.frame8.get( index ) & 0xFF );
+        }
+        return ( this.frame16.get( index ) & 0xFFFF );
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Pixels without measurement and saturated pixels are not valid.
+     */
+    public boolean checkPixel( int i , int j )
+    {
+        int value = this.rawValue( i , j );
+        if( this.frame8 != null ) {
+            return ( value != NO_MEASUREMENT_8  &&  value != SATURATED_8 );
+        }
+        return ( value != NO_MEASUREMENT_16  &&  value != SATURATED_16 );
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    public double depth( int i , int j )
+    {
+        int value = this.rawValue( i , j );
+        if( this.frame8 != null ) {
+            return this.depthTable[value];
+        }
+        return 0.001 * value;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The row is decoded straight from the frame with a lookup table.
+     */
+    public void depthRow( int i , double[] output )
+    {
+        int start = this.base + i * this.rowsCols;
+        if( this.frame8 != null ) {
+            ByteBuffer frame = this.frame8;
+            double[] table = this.depthTable;
+            for( int j=0; j<this.rowsCols; j++ ) {
+                output[j] = table[ frame.get( start + j ) & 0xFF ];
+            }
+        } else {
+            ShortBuffer frame = this.frame16;
+            for( int j=0; j<this.rowsCols; j++ ) {
+                output[j] = 0.001 * ( frame.get( start + j ) & 0xFFFF );
+            }
+        }
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bitmask is computed straight from the frame.
+     */
+    public void validityRow( int i , long[] output )
+    {
+        int start = this.base + i * this.rowsCols;
+        int words = ( this.rowsCols + 63 ) >>> 6;
+        for( int w=0; w<words; w++ ) {
+            int j0 = w << 6;
+            int j1 = Math.min( j0 + 64 , this.rowsCols );
+            long bits = 0L;
+            if( this.frame8 != null ) {
+                ByteBuffer frame = this.frame8;
+                for( int j=j0; j<j1; j++ ) {
+                    int value = frame.get( start + j ) & 0xFF;
+                    if( value != NO_MEASUREMENT_8  &&  value != SATURATED_8 ) {
+                        bits |= ( 1L << j );
+                    }
+                }
+            } else {
+                ShortBuffer frame = this.frame16;
+                for( int j=j0; j<j1; j++ ) {
+                    int value = frame.get( start + j ) & 0xFFFF;
+                    if( value != NO_MEASUREMENT_16  &&  value != SATURATED_16 ) {
+                        bits |= ( 1L << j );
+                    }
+                }
+            }
+            output[w] = bits;
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Computes the depth in meters of each byte value, for each quantization unit.
+     */
+    private static double[][] depthTables()
+    {
+        double[][] tables = new double[MAX_QUANTIZATION_UNIT+1][256];
+        for( int p=0; p<256; p++ ) {
+            double root = p / 5.1;
+            tables[0][p] = 0.001 * root * root;
+        }
+        for( int unit=1; unit<=MAX_QUANTIZATION_UNIT; unit++ ) {
+            for( int p=0; p<256; p++ ) {
+                tables[unit][p] = 0.001 * p * unit;
+            }
+        }
+        return tables;
+    }
+    
+}
@@ -0,0 +1,744 @@
+package sensorCalibrationLibrary.depthCameras.maixSenseA010;
+
+
+import numericalLibrary.types.MatrixReal;
+import numericalLibrary.types.Vector3;
+import sensorCalibrationLibrary.depthCameras.DepthImage;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
+
+
+
+/**
+ * Estimates the parameters of {@link MaixSenseA010DefaultCalibration} from frames of a planar target.
+ * <p>
+ * Each frame must come with the plane of the target in the camera frame, n*p = d with |n| = 1, as given for example by fiducial markers or a robot.
+ * The plane is needed because the fields of view, the principal point, and the depth scale map planes into planes,
+ * so they cannot be estimated from the flatness of the point cloud alone.
+ * <p>
+ * With the normalized pixel coordinates u = column/cols and v = row/rows, and the raw depth r, the distance of each point to the plane is linear in
+ * w = (r*u, r*v, r, u, v, 1) and in the normal n:
+ * <pre>
+ * ( s*r + b )*( nx*ax*(u-cx) + ny*ay*(v-cy) + nz ) - d = g(theta)^T ( n (x) w ) - d
+ * </pre>
+ * where ax and ay are the sizes of the projection screen at 1 meter, (cx,cy) the principal point, and (s,b) the depth scale and bias.
+ * Each frame is reduced to the 6x6 moments of w, which are accumulated, weighted by n and d, into fixed-size moment tensors.
+ * Thus, memory is constant and the solve time does not depend on the number of frames.
+ * The sum of squared distances is minimized with the Levenberg-Marquardt algorithm, starting from the datasheet parameters.
+ */
+public class MaixSenseA010IntrinsicCalibrator
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of monomials of the pixel data: (r*u, r*v, r, u, v, 1).
+     */
+    private static final int W = 6;
+    
+    /**
+     * Number of coefficients g: one per monomial and component of the normal.
+     */
+    private static final int G = 3 * W;
+    
+    /**
+     * Number of parameters: (ax, ay, cx, cy, s, b).
+     */
+    private static final int P = 6;
+    
+    /**
+     * Iterative calibration method will stop if not converged after {@link #MAX_CALIBRATION_ITERATIONS} iterations.
+     */
+    private static final int MAX_CALIBRATION_ITERATIONS = 200;
+    
+    /**
+     * Iterative calibration method will stop if the step is rejected {@link #MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT} consecutive iterations.
+     */
+    private static final int MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT = 20;
+    
+    /**
+     * Initial damping of the Levenberg-Marquardt algorithm relative to the largest diagonal element of J^T*J.
+     */
+    private static final double INITIAL_DAMPING_FACTOR = 1.0e-3;
+    
+    /**
+     * Default tolerances used to decide that the solver has converged.
+     */
+    private static final double DEFAULT_STEP_RELATIVE_TOLERANCE = 1.0e-12;
+    private static final double DEFAULT_STEP_ABSOLUTE_TOLERANCE = 0.0;
+    private static final double DEFAULT_GRADIENT_RELATIVE_TOLERANCE = 0.0;
+    private static final double DEFAULT_GRADIENT_ABSOLUTE_TOLERANCE = 1.0e-15;
+    
+    /**
+     * Name reported to the {@link Instrumentation}.
+     */
+    private static final String NAME = "MaixSenseA010IntrinsicCalibrator";
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Sum over the points of ( n (x) w )( n (x) w )^T (GxG).
+     */
+    private final double[] E = new double[G * G];
+    
+    /**
+     * Sum over the points of d * ( n (x) w ) (G).
+     */
+    private final double[] h = new double[G];
+    
+    /**
+     * Sum over the points of d^2.
+     */
+    private double c;
+    
+    /**
+     * Number of points.
+     */
+    private long numberOfPoints;
+    
+    /**
+     * Number of rows or columns of the last frame.
+     */
+    private int imageRowsCols;
+    
+    /**
+     * Unit normal of the plane of the frame being added.
+     */
+    private final double[] n = new double[3];
+    
+    /**
+     * Moments of w of the frame being added (WxW).
+     */
+    private final double[] frameMoments = new double[W * W];
+    
+    /**
+     * Monomials of the pixel being added.
+     */
+    private final double[] w = new double[W];
+    
+    /**
+     * Depth values of a row of the frame being added.
+     */
+    private double[] rowDepth = new double[0];
+    
+    /**
+     * Validity bitmask of a row of the frame being added.
+     */
+    private long[] rowValidity = new long[0];
+    
+    /**
+     * Solution: (ax, ay, cx, cy, s, b).
+     */
+    private final double[] theta = new double[P];
+    
+    /**
+     * Coefficients g(theta) (G).
+     */
+    private final double[] g = new double[G];
+    
+    /**
+     * Jacobian of g(theta) stored by rows (GxP).
+     */
+    private final double[] Dg = new double[G * P];
+    
+    /**
+     * E*g - h (G).
+     */
+    private final double[] Eg = new double[G];
+    
+    /**
+     * E*Dg stored by rows (GxP).
+     */
+    private final double[] EDg = new double[G * P];
+    
+    /**
+     * J^T*J at {@link #theta} stored by rows (PxP).
+     */
+    private final double[] JTJ = new double[P * P];
+    
+    /**
+     * J^T*dy at {@link #theta} (P).
+     */
+    private final double[] JTdy = new double[P];
+    
+    /**
+     * Damped J^T*J, overwritten by its Cholesky decomposition, and then J^T*J at the new point (PxP).
+     */
+    private final double[] S = new double[P * P];
+    
+    /**
+     * Step of the solver, and then J^T*dy at the new point (P).
+     */
+    private final double[] step = new double[P];
+    
+    /**
+     * {@link #theta} before the step, restored if the step is rejected (P).
+     */
+    private final double[] thetaPrev = new double[P];
+    
+    /**
+     * Convergence criteria of the solver.
+     */
+    private double stepRelativeTolerance = DEFAULT_STEP_RELATIVE_TOLERANCE;
+    private double stepAbsoluteTolerance = DEFAULT_STEP_ABSOLUTE_TOLERANCE;
+    private double gradientRelativeTolerance = DEFAULT_GRADIENT_RELATIVE_TOLERANCE;
+    private double gradientAbsoluteTolerance = DEFAULT_GRADIENT_ABSOLUTE_TOLERANCE;
+    
+    /**
+     * Statistics of the last run of the solver.
+     */
+    private int iterations;
+    private double cost;
+    private boolean converged;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link MaixSenseA010IntrinsicCalibrator}.
+     */
+    public MaixSenseA010IntrinsicCalibrator()
+    {
+        this.reset();
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Removes all the frames, and resets the solution to the datasheet parameters.
+     */
+    public void reset()
+    {
+        for( int i=0; i<this.E.length; i++ ) {
+            this.E[i] = 0.0;
+        }
+        for( int i=0; i<G; i++ ) {
+            this.h[i] = 0.0;
+        }
+        this.c = 0.0;
+        this.numberOfPoints = 0;
+        MaixSenseA010DefaultCalibration datasheet = new MaixSenseA010DefaultCalibration();
+        this.setSolution( datasheet.getParameters() );
+        this.iterations = 0;
+        this.cost = 0.0;
+        this.converged = false;
+    }
+    
+    
+    /**
+     * Sets the tolerances on the step of the solver.
+     * <p>
+     * The solver stops when the norm of the step is below absolute + relative * |theta|.
+     * 
+     * @param relative  tolerance relative to the norm of the parameters (1e-12 by default).
+     * @param absolute  absolute tolerance (0 by default).
+     * @throws IllegalArgumentException     if a tolerance is negative.
+     */
+    public void setStepTolerance( double relative , double absolute )
+    {
+        if( !( relative >= 0.0  &&  absolute >= 0.0 ) ) {
+            throw new IllegalArgumentException( "MaixSenseA010IntrinsicCalibrator: tolerances must be non-negative." );
+        }
+        this.stepRelativeTolerance = relative;
+        this.stepAbsoluteTolerance = absolute;
+    }
+    
+    
+    /**
+     * Sets the tolerances on the gradient of the cost function.
+     * <p>
+     * The solver stops when the largest component of the gradient is below absolute + relative * (largest component of the initial gradient).
+     * 
+     * @param relative  tolerance relative to the initial gradient (0 by default).
+     * @param absolute  absolute tolerance (1e-15 by default).
+     * @throws IllegalArgumentException     if a tolerance is negative.
+     */
+    public void setGradientTolerance( double relative , double absolute )
+    {
+        if( !( relative >= 0.0  &&  absolute >= 0.0 ) ) {
+            throw new IllegalArgumentException( "MaixSenseA010IntrinsicCalibrator: tolerances must be non-negative." );
+        }
+        this.gradientRelativeTolerance = relative;
+        this.gradientAbsoluteTolerance = absolute;
+    }
+    
+    
+    /**
+     * Adds the valid pixels of a frame of a planar target.
+     * <p>
+     * The frame is reduced to the moments of its pixels, so it is not needed after this method returns.
+     * 
+     * @param image     depth image of the target.
+     * @param planeNormal   normal of the plane of the target in the camera frame; it does not need to be unitary.
+     * @param planeDistance     signed distance from the camera to the plane along the normal: n*p = planeDistance for the points p of the plane [m].
+     * @throws IllegalArgumentException     if the image is not square, or the normal is zero.
+     */
+    public void addFrame( DepthImage image , Vector3 planeNormal , double planeDistance )
+    {
+        if( image.rows() != image.cols() ) {
+            throw new IllegalArgumentException( "MaixSenseA010IntrinsicCalibrator: the image must be square." );
+        }
+        double norm = Math.sqrt( planeNormal.x()*planeNormal.x() + planeNormal.y()*planeNormal.y() + planeNormal.z()*planeNormal.z() );
+        if( !( norm > 0.0 ) ) {
+            throw new IllegalArgumentException( "MaixSenseA010IntrinsicCalibrator: the normal of the plane must not be zero." );
+        }
+        Measurement measurement = Instrumentation.beginIngest();
+        double[] n = this.n;
+        n[0] = planeNormal.x() / norm;
+        n[1] = planeNormal.y() / norm;
+        n[2] = planeNormal.z() / norm;
+        double[] M = this.frameMoments;
+        for( int i=0; i<M.length; i++ ) {
+            M[i] = 0.0;
+        }
+        this.accumulateFrame( image );
+        long count = (long)M[W*W-1];
+        if( count == 0 ) {
+            Instrumentation.endIngest( measurement , NAME , 0 );
+            return;
+        }
+        // E[(a,i),(b,j)] += n_a n_b M[i][j], h[(a,i)] += d n_a M[i][5], c += d^2 M[5][5]
+        for( int a=0; a<3; a++ ) {
+            for( int i=0; i<W; i++ ) {
+                int row = ( a*W + i ) * G;
+                for( int b=0; b<3; b++ ) {
+                    double nab = n[a] * n[b];
+                    for( int j=0; j<W; j++ ) {
+                        this.E[row + b*W + j] += nab * M[i*W + j];
+                    }
+                }
+                this.h[a*W + i] += planeDistance * n[a] * M[i*W + W-1];
+            }
+        }
+        this.c += planeDistance * planeDistance * M[W*W-1];
+        this.numberOfPoints += count;
+        this.imageRowsCols = image.cols();
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+    
+    
+    /**
+     * Estimates the parameters that minimize the sum of squared distances of the points to the planes of their frames.
+     * 
+     * @throws IllegalStateException    if no points have been added.
+     */
+    public void calibrate()
+    {
+        if( this.numberOfPoints == 0 ) {
+            throw new IllegalStateException( "MaixSenseA010IntrinsicCalibrator: no frames have been added." );
+        }
+        MaixSenseA010DefaultCalibration datasheet = new MaixSenseA010DefaultCalibration();
+        this.setSolution( datasheet.getParameters() );
+        this.iterate();
+    }
+    
+    
+    /**
+     * Returns the calibration with the parameters of the last solution, for the image size of the last frame.
+     * 
+     * @return  calibration with the parameters of the last solution.
+     */
+    public MaixSenseA010DefaultCalibration getCalibration()
+    {
+        MatrixReal parameters = MatrixReal.empty( P , 1 );
+        parameters.setEntry( 0 , 0 , 2.0 * Math.atan( this.theta[0] / 2.0 ) );
+        parameters.setEntry( 1 , 0 , 2.0 * Math.atan( this.theta[1] / 2.0 ) );
+        parameters.setEntry( 2 , 0 , this.theta[2] );
+        parameters.setEntry( 3 , 0 , this.theta[3] );
+        parameters.setEntry( 4 , 0 , this.theta[4] );
+        parameters.setEntry( 5 , 0 , this.theta[5] );
+        MaixSenseA010DefaultCalibration output = new MaixSenseA010DefaultCalibration();
+        output.setParameters( parameters );
+        if( this.imageRowsCols > 0 ) {
+            output.setImageSize( this.imageRowsCols );
+        }
+        return output;
+    }
+    
+    
+    /**
+     * Returns the number of points added.
+     * 
+     * @return  number of points added.
+     */
+    public long getNumberOfPoints()
+    {
+        return this.numberOfPoints;
+    }
+    
+    
+    /**
+     * Returns the number of iterations of the last run of the solver.
+     * 
+     * @return  number of iterations of the last run of the solver.
+     */
+    public int getIterations()
+    {
+        return this.iterations;
+    }
+    
+    
+    /**
+     * Returns the residual of the last solution: the root mean square distance of the points to the planes of their frames [m].
+     * 
+     * @return  residual of the last solution.
+     */
+    public double getResidual()
+    {
+        return Math.sqrt( Math.max( this.cost , 0.0 ) );
+    }
+    
+    
+    /**
+     * Returns true if the last run of the solver met the convergence criteria before reaching the maximum number of iterations.
+     * 
+     * @return  true if the last run of the solver converged.
+     */
+    public boolean hasConverged()
+    {
+        return this.converged;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Adds the moments of w of the valid pixels of the image to {@link #frameMoments}.
+     */
+    private void accumulateFrame( DepthImage image )
+    {
+        int rows = image.rows();
+        int cols = image.cols();
+        if( this.rowDepth.length < cols ) {
+            this.rowDepth = new double[cols];
+        }
+        if( this.rowValidity.length < image.validityRowLength() ) {
+            this.rowValidity = new long[image.validityRowLength()];
+        }
+        double[] depth = this.rowDepth;
+        long[] validity = this.rowValidity;
+        double[] M = this.frameMoments;
+        double[] w = this.w;
+        int words = ( cols + 63 ) >>> 6;
+        for( int row=0; row<rows; row++ ) {
+            image.depthRow( row , depth );
+            image.validityRow( row , validity );
+            double v = (double)row / rows;
+            for( int k=0; k<words; k++ ) {
+                long bits = validity[k];
+                while( bits != 0L ) {
+                    int column = ( k << 6 ) + Long.numberOfTrailingZeros( bits );
+                    double u = (double)column / cols;
+                    double r = depth[column];
+                    w[0] = r * u;
+                    w[1] = r * v;
+                    w[2] = r;
+                    w[3] = u;
+                    w[4] = v;
+                    w[5] = 1.0;
+                    for( int i=0; i<W; i++ ) {
+                        double wi = w[i];
+                        for( int j=i; j<W; j++ ) {
+                            M[i*W + j] += wi * w[j];
+                        }
+                    }
+                    bits &= bits - 1;
+                }
+            }
+        }
+        for( int i=0; i<W; i++ ) {
+            for( int j=0; j<i; j++ ) {
+                M[i*W + j] = M[j*W + i];
+            }
+        }
+    }
+    
+    
+    /**
+     * Iterates the Levenberg-Marquardt algorithm starting from {@link #theta}.
+     */
+    private void iterate()
+    {
+        Measurement measurement = Instrumentation.beginSolve();
+        boolean instrumentIterations = Instrumentation.iterationsEnabled();
+        double[] JTJ = this.JTJ;
+        double[] JTdy = this.JTdy;
+        double[] S = this.S;
+        double[] step = this.step;
+        double[] thetaPrev = this.thetaPrev;
+        double F = this.evaluate( JTJ , JTdy );
+        double maxDiagonal = 0.0;
+        for( int i=0; i<P; i++ ) {
+            maxDiagonal = Math.max( maxDiagonal , JTJ[i*P + i] );
+        }
+        double mu = INITIAL_DAMPING_FACTOR * maxDiagonal;
+        double nu = 2.0;
+        double gradientTolerance = this.gradientAbsoluteTolerance + this.gradientRelativeTolerance * normInf( JTdy );
+        this.converged = false;
+        int itWithoutImprovement = 0;
+        int k = 0;
+        while( k < MAX_CALIBRATION_ITERATIONS ) {
+            // we stop if the gradient vanishes
+            if( normInf( JTdy ) <= gradientTolerance ) {
+                this.converged = true;
+                break;
+            }
+            k++;
+            // we compute the damped step ( (J^T*J + mu*I)*step = J^T*dy )
+            for( int i=0; i<P*P; i++ ) {
+                S[i] = JTJ[i];
+            }
+            for( int i=0; i<P; i++ ) {
+                S[i*P + i] += mu;
+                step[i] = JTdy[i];
+            }
+            if( !solve( S , step ) ) {
+                if( instrumentIterations ) {
+                    Instrumentation.iteration( NAME , k , Math.sqrt( Math.max( F , 0.0 ) ) , mu , false );
+                }
+                mu *= nu;
+                nu *= 2.0;
+                itWithoutImprovement++;
+                if( itWithoutImprovement > MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT ) {
+                    break;
+                }
+                continue;
+            }
+            // we stop if the step is negligible
+            double stepNorm2 = 0.0;
+            double thetaNorm2 = 0.0;
+            double stepGradient = 0.0;
+            for( int i=0; i<P; i++ ) {
+                stepNorm2 += step[i] * step[i];
+                thetaNorm2 += this.theta[i] * this.theta[i];
+                stepGradient += step[i] * JTdy[i];
+            }
+            if( Math.sqrt( stepNorm2 ) <= this.stepAbsoluteTolerance + this.stepRelativeTolerance * Math.sqrt( thetaNorm2 ) ) {
+                this.converged = true;
+                break;
+            }
+            // we evaluate the cost at the new point
+            System.arraycopy( this.theta , 0 , thetaPrev , 0 , P );
+            for( int i=0; i<P; i++ ) {
+                this.theta[i] += step[i];
+            }
+            double Fnew = this.evaluate( S , step );
+            // the reduction predicted by the linearized model is step^T*J^T*dy + mu*step^T*step
+            double rho = ( F - Fnew ) / ( stepGradient + mu * stepNorm2 );
+            if( instrumentIterations ) {
+                Instrumentation.iteration( NAME , k , Math.sqrt( Math.max( ( rho > 0.0 )?  Fnew : F , 0.0 ) ) , mu , rho > 0.0 );
+            }
+            if( rho > 0.0 ) {
+                // the step is accepted, and the damping reduced
+                F = Fnew;
+                System.arraycopy( S , 0 , JTJ , 0 , P * P );
+                System.arraycopy( step , 0 , JTdy , 0 , P );
+                double r = 2.0 * rho - 1.0;
+                mu *= Math.max( 1.0 / 3.0 , 1.0 - r * r * r );
+                nu = 2.0;
+                itWithoutImprovement = 0;
+            } else {
+                // the step is rejected, and the damping increased
+                System.arraycopy( thetaPrev , 0 , this.theta , 0 , P );
+                mu *= nu;
+                nu *= 2.0;
+                itWithoutImprovement++;
+                if( itWithoutImprovement > MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT ) {
+                    break;
+                }
+            }
+        }
+        this.iterations = k;
+        this.cost = F;
+        Instrumentation.endSolve( measurement , NAME , k , this.getResidual() , this.converged , !this.converged && k == MAX_CALIBRATION_ITERATIONS );
+    }
+    
+    
+    /**
+     * Computes the mean squared distance at {@link #theta}, and the normal equations of the Gauss-Newton step.
+     * <p>
+     * The coefficients g(theta) and their Jacobian are stored in {@link #g} and {@link #Dg}.
+     * 
+     * @param JTJ   output: J^T*J = Dg^T*E*Dg / numberOfPoints stored by rows (PxP).
+     * @param JTdy  output: J^T*dy = -Dg^T*( E*g - h ) / numberOfPoints (P).
+     * @return  mean squared distance ( g^T*E*g - 2*h^T*g + c ) / numberOfPoints.
+     */
+    private double evaluate( double[] JTJ , double[] JTdy )
+    {
+        double[] g = this.g;
+        double[] Dg = this.Dg;
+        double[] Eg = this.Eg;
+        double[] EDg = this.EDg;
+        double ax = this.theta[0];
+        double ay = this.theta[1];
+        double cx = this.theta[2];
+        double cy = this.theta[3];
+        double s = this.theta[4];
+        double b = this.theta[5];
+        for( int i=0; i<G; i++ ) {
+            g[i] = 0.0;
+        }
+        for( int i=0; i<G*P; i++ ) {
+            Dg[i] = 0.0;
+            EDg[i] = 0.0;
+        }
+        // each coefficient g[i] is followed by its nonzero derivatives Dg[i*P + p], with p indexing (ax, ay, cx, cy, s, b)
+        // normal x: ( s*r + b )*ax*( u - cx )
+        g[0] = s*ax;
+        Dg[0*P + 0] = s;
+        Dg[0*P + 4] = ax;
+        g[2] = -s*ax*cx;
+        Dg[2*P + 0] = -s*cx;
+        Dg[2*P + 2] = -s*ax;
+        Dg[2*P + 4] = -ax*cx;
+        g[3] = b*ax;
+        Dg[3*P + 0] = b;
+        Dg[3*P + 5] = ax;
+        g[5] = -b*ax*cx;
+        Dg[5*P + 0] = -b*cx;
+        Dg[5*P + 2] = -b*ax;
+        Dg[5*P + 5] = -ax*cx;
+        // normal y: ( s*r + b )*ay*( v - cy )
+        g[W+1] = s*ay;
+        Dg[(W+1)*P + 1] = s;
+        Dg[(W+1)*P + 4] = ay;
+        g[W+2] = -s*ay*cy;
+        Dg[(W+2)*P + 1] = -s*cy;
+        Dg[(W+2)*P + 3] = -s*ay;
+        Dg[(W+2)*P + 4] = -ay*cy;
+        g[W+4] = b*ay;
+        Dg[(W+4)*P + 1] = b;
+        Dg[(W+4)*P + 5] = ay;
+        g[W+5] = -b*ay*cy;
+        Dg[(W+5)*P + 1] = -b*cy;
+        Dg[(W+5)*P + 3] = -b*ay;
+        Dg[(W+5)*P + 5] = -ay*cy;
+        // normal z: s*r + b
+        g[2*W+2] = s;
+        Dg[(2*W+2)*P + 4] = 1.0;
+        g[2*W+5] = b;
+        Dg[(2*W+5)*P + 5] = 1.0;
+        // Eg = E*g - h, and EDg = E*Dg
+        double gEg = 0.0;
+        double hg = 0.0;
+        for( int i=0; i<G; i++ ) {
+            double sum = 0.0;
+            for( int j=0; j<G; j++ ) {
+                double Eij = this.E[i*G + j];
+                sum += Eij * g[j];
+                for( int p=0; p<P; p++ ) {
+                    EDg[i*P + p] += Eij * Dg[j*P + p];
+                }
+            }
+            gEg += g[i] * sum;
+            hg += this.h[i] * g[i];
+            Eg[i] = sum - this.h[i];
+        }
+        double scale = 1.0 / this.numberOfPoints;
+        for( int p=0; p<P; p++ ) {
+            double sum = 0.0;
+            for( int i=0; i<G; i++ ) {
+                sum += Dg[i*P + p] * Eg[i];
+            }
+            JTdy[p] = -sum * scale;
+            for( int q=0; q<P; q++ ) {
+                double sumq = 0.0;
+                for( int i=0; i<G; i++ ) {
+                    sumq += Dg[i*P + p] * EDg[i*P + q];
+                }
+                JTJ[p*P + q] = sumq * scale;
+            }
+        }
+        return ( gEg - 2.0 * hg + this.c ) * scale;
+    }
+    
+    
+    /**
+     * Sets the solution from the parameters of a {@link MaixSenseA010DefaultCalibration}.
+     */
+    private void setSolution( MatrixReal parameters )
+    {
+        this.theta[0] = 2.0 * Math.tan( parameters.entry( 0 , 0 ) / 2.0 );
+        this.theta[1] = 2.0 * Math.tan( parameters.entry( 1 , 0 ) / 2.0 );
+        this.theta[2] = parameters.entry( 2 , 0 );
+        this.theta[3] = parameters.entry( 3 , 0 );
+        this.theta[4] = parameters.entry( 4 , 0 );
+        this.theta[5] = parameters.entry( 5 , 0 );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Solves S*x = y in place with the Cholesky decomposition of the symmetric matrix S (PxP), which is overwritten.
+     * 
+     * @return  false if S is not positive definite.
+     */
+    private static boolean solve( double[] S , double[] y )
+    {
+        for( int j=0; j<P; j++ ) {
+            double diagonal = S[j*P + j];
+            for( int k=0; k<j; k++ ) {
+                diagonal -= S[j*P + k] * S[j*P + k];
+            }
+            if( !( diagonal > 0.0 ) ) {
+                return false;
+            }
+            S[j*P + j] = Math.sqrt( diagonal );
+            for( int i=j+1; i<P; i++ ) {
+                double sum = S[i*P + j];
+                for( int k=0; k<j; k++ ) {
+                    sum -= S[i*P + k] * S[j*P + k];
+                }
+                S[i*P + j] = sum / S[j*P + j];
+            }
+        }
+        for( int i=0; i<P; i++ ) {
+            double sum = y[i];
+            for( int k=0; k<i; k++ ) {
+                sum -= S[i*P + k] * y[k];
+            }
+            y[i] = sum / S[i*P + i];
+        }
+        for( int i=P-1; i>=0; i-- ) {
+            double sum = y[i];
+            for( int k=i+1; k<P; k++ ) {
+                sum -= S[k*P + i] * y[k];
+            }
+            y[i] = sum / S[i*P + i];
+        }
+        return true;
+    }
+    
+    
+    /**
+     * Returns the largest absolute value of the components of v.
+     */
+    private static double normInf( double[] v )
+    {
+        double max = 0.0;
+        for( int i=0; i<v.length; i++ ) {
+            max = Math.max( max , Math.abs( v[i] ) );
+        }
+        return max;
+    }
+    
+}
@@ -0,0 +1,40 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+
+/**
+ * Flight Recorder event emitted when a bundle of calibrations is saved or loaded.
+ */
+@Name( "sensorCalibrationLibrary.BundleFile" )
+@Label( "Calibration Bundle File" )
+@Description( "A bundle of calibrations was saved or loaded." )
+@Category( { "Sensor Calibration Library" } )
+public final class BundleFileEvent
+    extends InstrumentationEvent
+{
+    @Label( "Operation" )
+    String operation;
+    
+    @Label( "Path" )
+    String path;
+    
+    @Label( "Calibrations" )
+    int calibrations;
+    
+    @Label( "Size" )
+    @DataAmount
+    long bytes;
+    
+    
+    BundleFileEvent()
+    {
+    }
+    
+}
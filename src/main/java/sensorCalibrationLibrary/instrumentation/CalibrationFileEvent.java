@@ -0,0 +1,40 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+
+/**
+ * Flight Recorder event emitted when a single calibration is saved or loaded, in text or binary format.
+ */
+@Name( "sensorCalibrationLibrary.CalibrationFile" )
+@Label( "Calibration File" )
+@Description( "A calibration was saved or loaded." )
+@Category( { "Sensor Calibration Library" } )
+public final class CalibrationFileEvent
+    extends InstrumentationEvent
+{
+    @Label( "Operation" )
+    String operation;
+    
+    @Label( "Calibration" )
+    String calibration;
+    
+    @Label( "Path" )
+    String path;
+    
+    @Label( "Size" )
+    @DataAmount
+    long bytes;
+    
+    
+    CalibrationFileEvent()
+    {
+    }
+    
+}
@@ -0,0 +1,99 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+
+/**
+ * Receives notifications of the work done by the library, once registered with {@link Instrumentation#addListener(CalibrationListener)}.
+ * <p>
+ * The methods are called synchronously in the thread that does the work, possibly from several threads at the same time,
+ * so they must be thread-safe and return quickly.
+ * All of them do nothing by default, so implementations only override the notifications they need.
+ */
+public interface CalibrationListener
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC DEFAULT METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Called when a calibrator has added a batch of calibration data.
+     * 
+     * @param calibrator    name of the class of the calibrator.
+     * @param count     number of measurements (or pixels) in the batch.
+     * @param nanos     time spent adding the batch, in nanoseconds.
+     */
+    public default void ingestCompleted( String calibrator , long count , long nanos )
+    {
+    }
+    
+    
+    /**
+     * Called after each iteration of the solver of a calibrator.
+     * 
+     * @param calibrator    name of the class of the calibrator.
+     * @param iteration     number of the iteration, starting at 1.
+     * @param residual  residual of the current solution, as returned by the calibrator once it finishes.
+     * @param damping   damping of the Levenberg-Marquardt algorithm used in the iteration.
+     * @param accepted  true if the step was accepted; false if it was rejected, and the solution did not change.
+     */
+    public default void iterationCompleted( String calibrator , int iteration , double residual , double damping , boolean accepted )
+    {
+    }
+    
+    
+    /**
+     * Called when the solver of a calibrator has finished.
+     * 
+     * @param calibrator    name of the class of the calibrator.
+     * @param iterations    number of iterations.
+     * @param residual  residual of the solution.
+     * @param converged     true if the solver met its convergence criteria.
+     * @param maxIterationsReached  true if the solver stopped because it reached the maximum number of iterations.
+     * @param nanos     time spent by the solver, in nanoseconds.
+     */
+    public default void calibrationCompleted( String calibrator , int iterations , double residual , boolean converged , boolean maxIterationsReached , long nanos )
+    {
+    }
+    
+    
+    /**
+     * Called when a bundle of calibrations has been saved or loaded.
+     * 
+     * @param operation     "save" or "load".
+     * @param path  path of the file.
+     * @param calibrations  number of calibrations in the bundle.
+     * @param bytes     size of the file in bytes.
+     * @param nanos     time spent, in nanoseconds.
+     */
+    public default void bundleFileCompleted( String operation , String path , int calibrations , long bytes , long nanos )
+    {
+    }
+    
+    
+    /**
+     * Called when a single calibration has been saved or loaded, in text or binary format.
+     * 
+     * @param operation     "save" or "load".
+     * @param calibration   name of the class of the calibration.
+     * @param path  path of the file.
+     * @param bytes     size of the file in bytes.
+     * @param nanos     time spent, in nanoseconds.
+     */
+    public default void calibrationFileCompleted( String operation , String calibration , String path , long bytes , long nanos )
+    {
+    }
+    
+    
+    /**
+     * Called when a depth image has been converted into a point cloud.
+     * 
+     * @param mode  "serial", "parallel", or "voxels" (conversion into voxel centroids).
+     * @param pixels    number of pixels of the image.
+     * @param points    number of points of the resulting point cloud.
+     * @param nanos     time spent in the conversion, in nanoseconds.
+     */
+    public default void depthFrameConverted( String mode , int pixels , int points , long nanos )
+    {
+    }
+    
+}
@@ -0,0 +1,38 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+
+/**
+ * Flight Recorder event emitted when a depth image is converted into a point cloud.
+ */
+@Name( "sensorCalibrationLibrary.DepthFrameConversion" )
+@Label( "Depth Frame Conversion" )
+@Description( "A depth image was converted into a point cloud." )
+@Category( { "Sensor Calibration Library" } )
+@StackTrace( false )
+public final class DepthFrameConversionEvent
+    extends InstrumentationEvent
+{
+    @Label( "Mode" )
+    @Description( "serial, parallel, or voxels." )
+    String mode;
+    
+    @Label( "Pixels" )
+    int pixels;
+    
+    @Label( "Points" )
+    int points;
+    
+    
+    DepthFrameConversionEvent()
+    {
+    }
+    
+}
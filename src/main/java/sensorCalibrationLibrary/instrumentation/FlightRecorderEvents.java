@@ -0,0 +1,216 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.FlightRecorder;
+
+
+
+/**
+ * Creates and commits the Flight Recorder events of {@link Instrumentation}.
+ * <p>
+ * This is the only class that uses the event classes, and {@link Instrumentation} only loads it if the jdk.jfr module is present.
+ * The event classes are only loaded once Flight Recorder has been initialized, for example by {@code -XX:StartFlightRecording} or {@code jcmd JFR.start},
+ * because the JVM instruments each event class when it is loaded, which takes hundreds of milliseconds the first time;
+ * Flight Recorder is never started nor queried through {@link jdk.jfr.EventType} by this class.
+ * The events are not passed as {@link InstrumentationEvent}, nor as any other superclass, so that verifying this class does not load them,
+ * and they are passed as Object so that the signatures of {@link Instrumentation} do not refer to jdk.jfr.
+ */
+final class FlightRecorderEvents
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    private FlightRecorderEvents()
+    {
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Begins an {@link IngestEvent}, or returns null if it is not enabled.
+     */
+    static Object beginIngest()
+    {
+        if( !FlightRecorder.isInitialized() ) {
+            return null;
+        }
+        IngestEvent ingest = new IngestEvent();
+        if( !ingest.isEnabled() ) {
+            return null;
+        }
+        ingest.begin();
+        return ingest;
+    }
+    
+    
+    /**
+     * Commits an event returned by {@link #beginIngest()}.
+     */
+    static void endIngest( Object event , String calibrator , long count )
+    {
+        IngestEvent ingest = (IngestEvent)event;
+        ingest.calibrator = calibrator;
+        ingest.count = count;
+        ingest.commit();
+    }
+    
+    
+    /**
+     * Begins a {@link SolveEvent}, or returns null if it is not enabled.
+     */
+    static Object beginSolve()
+    {
+        if( !FlightRecorder.isInitialized() ) {
+            return null;
+        }
+        SolveEvent solve = new SolveEvent();
+        if( !solve.isEnabled() ) {
+            return null;
+        }
+        solve.begin();
+        return solve;
+    }
+    
+    
+    /**
+     * Commits an event returned by {@link #beginSolve()}.
+     */
+    static void endSolve( Object event , String calibrator , int iterations , double residual , boolean converged , boolean maxIterationsReached )
+    {
+        SolveEvent solve = (SolveEvent)event;
+        solve.calibrator = calibrator;
+        solve.iterations = iterations;
+        solve.residual = residual;
+        solve.converged = converged;
+        solve.maxIterationsReached = maxIterationsReached;
+        solve.commit();
+    }
+    
+    
+    /**
+     * Checks if {@link SolverIterationEvent} is enabled.
+     */
+    static boolean iterationsEnabled()
+    {
+        return ( FlightRecorder.isInitialized()  &&  new SolverIterationEvent().isEnabled() );
+    }
+    
+    
+    /**
+     * Commits a {@link SolverIterationEvent} if it is enabled.
+     */
+    static void iteration( String calibrator , int iteration , double residual , double damping , boolean accepted )
+    {
+        if( !FlightRecorder.isInitialized() ) {
+            return;
+        }
+        SolverIterationEvent event = new SolverIterationEvent();
+        if( !event.isEnabled() ) {
+            return;
+        }
+        event.calibrator = calibrator;
+        event.iteration = iteration;
+        event.residual = residual;
+        event.damping = damping;
+        event.accepted = accepted;
+        event.commit();
+    }
+    
+    
+    /**
+     * Begins a {@link BundleFileEvent}, or returns null if it is not enabled.
+     */
+    static Object beginBundleFile()
+    {
+        if( !FlightRecorder.isInitialized() ) {
+            return null;
+        }
+        BundleFileEvent bundleFile = new BundleFileEvent();
+        if( !bundleFile.isEnabled() ) {
+            return null;
+        }
+        bundleFile.begin();
+        return bundleFile;
+    }
+    
+    
+    /**
+     * Commits an event returned by {@link #beginBundleFile()}.
+     */
+    static void endBundleFile( Object event , String operation , String path , int calibrations , long bytes )
+    {
+        BundleFileEvent bundleFile = (BundleFileEvent)event;
+        bundleFile.operation = operation;
+        bundleFile.path = path;
+        bundleFile.calibrations = calibrations;
+        bundleFile.bytes = bytes;
+        bundleFile.commit();
+    }
+    
+    
+    /**
+     * Begins a {@link CalibrationFileEvent}, or returns null if it is not enabled.
+     */
+    static Object beginCalibrationFile()
+    {
+        if( !FlightRecorder.isInitialized() ) {
+            return null;
+        }
+        CalibrationFileEvent calibrationFile = new CalibrationFileEvent();
+        if( !calibrationFile.isEnabled() ) {
+            return null;
+        }
+        calibrationFile.begin();
+        return calibrationFile;
+    }
+    
+    
+    /**
+     * Commits an event returned by {@link #beginCalibrationFile()}.
+     */
+    static void endCalibrationFile( Object event , String operation , String calibration , String path , long bytes )
+    {
+        CalibrationFileEvent calibrationFile = (CalibrationFileEvent)event;
+        calibrationFile.operation = operation;
+        calibrationFile.calibration = calibration;
+        calibrationFile.path = path;
+        calibrationFile.bytes = bytes;
+        calibrationFile.commit();
+    }
+    
+    
+    /**
+     * Begins a {@link DepthFrameConversionEvent}, or returns null if it is not enabled.
+     */
+    static Object beginDepthFrameConversion()
+    {
+        if( !FlightRecorder.isInitialized() ) {
+            return null;
+        }
+        DepthFrameConversionEvent conversion = new DepthFrameConversionEvent();
+        if( !conversion.isEnabled() ) {
+            return null;
+        }
+        conversion.begin();
+        return conversion;
+    }
+    
+    
+    /**
+     * Commits an event returned by {@link #beginDepthFrameConversion()}.
+     */
+    static void endDepthFrameConversion( Object event , String mode , int pixels , int points )
+    {
+        DepthFrameConversionEvent conversion = (DepthFrameConversionEvent)event;
+        conversion.mode = mode;
+        conversion.pixels = pixels;
+        conversion.points = points;
+        conversion.commit();
+    }
+    
+}
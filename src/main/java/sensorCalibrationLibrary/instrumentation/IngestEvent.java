@@ -0,0 +1,35 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+
+/**
+ * Flight Recorder event emitted when a calibrator adds a batch of calibration data.
+ */
+@Name( "sensorCalibrationLibrary.Ingest" )
+@Label( "Calibration Ingest" )
+@Description( "A calibrator added a batch of calibration data." )
+@Category( { "Sensor Calibration Library" } )
+@StackTrace( false )
+public final class IngestEvent
+    extends InstrumentationEvent
+{
+    @Label( "Calibrator" )
+    String calibrator;
+    
+    @Label( "Count" )
+    @Description( "Number of measurements (or pixels) in the batch." )
+    long count;
+    
+    
+    IngestEvent()
+    {
+    }
+    
+}
@@ -0,0 +1,370 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+
+/**
+ * Reports the work done by the library to the registered {@link CalibrationListener}s and to JDK Flight Recorder.
+ * <p>
+ * The library brackets each unit of work with a begin and an end method.
+ * The begin methods return null, without reading the clock, if there are no listeners and Flight Recorder is not recording the event,
+ * and the end methods return immediately when given null, so the cost of the instrumentation when disabled is a few field reads
+ * and the check of an event that is not being recorded.
+ * <p>
+ * The events can be recorded, for example, with {@code java -XX:StartFlightRecording ...};
+ * they are in the "Sensor Calibration Library" category, and {@link SolverIterationEvent} is disabled by default.
+ * The library never starts Flight Recorder by itself, and does not use it at all on runtimes without the jdk.jfr module.
+ */
+public final class Instrumentation
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Operation of the bundle and calibration files that are saved.
+     */
+    public static final String SAVE = "save";
+    
+    /**
+     * Operation of the bundle and calibration files that are loaded.
+     */
+    public static final String LOAD = "load";
+    
+    /**
+     * Mode of the conversions into point clouds in the calling thread.
+     */
+    public static final String SERIAL = "serial";
+    
+    /**
+     * Mode of the conversions into point clouds split among the threads of a pool.
+     */
+    public static final String PARALLEL = "parallel";
+    
+    /**
+     * Mode of the conversions into voxel centroids.
+     */
+    public static final String VOXELS = "voxels";
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * True if the runtime has the jdk.jfr module; otherwise {@link FlightRecorderEvents} is never loaded.
+     */
+    private static final boolean FLIGHT_RECORDER = ModuleLayer.boot().findModule( "jdk.jfr" ).isPresent();
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Registered listeners; replaced, never modified, when a listener is added or removed.
+     */
+    private static volatile CalibrationListener[] listeners = new CalibrationListener[0];
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    private Instrumentation()
+    {
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Registers a listener.
+     * 
+     * @param listener  listener that will receive the notifications of the library.
+     */
+    public static synchronized void addListener( CalibrationListener listener )
+    {
+        CalibrationListener[] current = listeners;
+        CalibrationListener[] updated = new CalibrationListener[current.length+1];
+        System.arraycopy( current , 0 , updated , 0 , current.length );
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+    
+    
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener  listener previously registered with {@link #addListener(CalibrationListener)}.
+     */
+    public static synchronized void removeListener( CalibrationListener listener )
+    {
+        CalibrationListener[] current = listeners;
+        for( int i=0; i<current.length; i++ ) {
+            if( current[i] == listener ) {
+                CalibrationListener[] updated = new CalibrationListener[current.length-1];
+                System.arraycopy( current , 0 , updated , 0 , i );
+                System.arraycopy( current , i+1 , updated , i , current.length-i-1 );
+                listeners = updated;
+                return;
+            }
+        }
+    }
+    
+    
+    /**
+     * Begins the ingest of a batch of calibration data.
+     * 
+     * @return  measurement to pass to {@link #endIngest(Measurement, String, long)}; null if the ingest is not instrumented.
+     */
+    public static Measurement beginIngest()
+    {
+        Object event = ( FLIGHT_RECORDER ) ? FlightRecorderEvents.beginIngest() : null;
+        if( event == null  &&  listeners.length == 0 ) {
+            return null;
+        }
+        return new Measurement( event );
+    }
+    
+    
+    /**
+     * Ends the ingest of a batch of calibration data.
+     * 
+     * @param measurement   measurement returned by {@link #beginIngest()}.
+     * @param calibrator    name of the class of the calibrator.
+     * @param count     number of measurements (or pixels) in the batch.
+     */
+    public static void endIngest( Measurement measurement , String calibrator , long count )
+    {
+        if( measurement == null ) {
+            return;
+        }
+        long nanos = System.nanoTime() - measurement.startNanos;
+        if( measurement.event != null ) {
+            FlightRecorderEvents.endIngest( measurement.event , calibrator , count );
+        }
+        for( CalibrationListener listener : listeners ) {
+            try {
+                listener.ingestCompleted( calibrator , count , nanos );
+            } catch( RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    
+    /**
+     * Begins a run of the solver of a calibrator.
+     * 
+     * @return  measurement to pass to {@link #endSolve(Measurement, String, int, double, boolean, boolean)}; null if the solver is not instrumented.
+     */
+    public static Measurement beginSolve()
+    {
+        Object event = ( FLIGHT_RECORDER ) ? FlightRecorderEvents.beginSolve() : null;
+        if( event == null  &&  listeners.length == 0 ) {
+            return null;
+        }
+        return new Measurement( event );
+    }
+    
+    
+    /**
+     * Ends a run of the solver of a calibrator.
+     * 
+     * @param measurement   measurement returned by {@link #beginSolve()}.
+     * @param calibrator    name of the class of the calibrator.
+     * @param iterations    number of iterations.
+     * @param residual  residual of the solution.
+     * @param converged     true if the solver met its convergence criteria.
+     * @param maxIterationsReached  true if the solver stopped because it reached the maximum number of iterations.
+     */
+    public static void endSolve( Measurement measurement , String calibrator , int iterations , double residual , boolean converged , boolean maxIterationsReached )
+    {
+        if( measurement == null ) {
+            return;
+        }
+        long nanos = System.nanoTime() - measurement.startNanos;
+        if( measurement.event != null ) {
+            FlightRecorderEvents.endSolve( measurement.event , calibrator , iterations , residual , converged , maxIterationsReached );
+        }
+        for( CalibrationListener listener : listeners ) {
+            try {
+                listener.calibrationCompleted( calibrator , iterations , residual , converged , maxIterationsReached , nanos );
+            } catch( RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    
+    /**
+     * Checks if the iterations of the solvers are instrumented.
+     * <p>
+     * Solvers check it once per run, and only call {@link #iteration(String, int, double, double, boolean)} if it returns true.
+     * 
+     * @return  true if there are listeners or Flight Recorder is recording {@link SolverIterationEvent}.
+     */
+    public static boolean iterationsEnabled()
+    {
+        return ( listeners.length != 0  ||  ( FLIGHT_RECORDER  &&  FlightRecorderEvents.iterationsEnabled() ) );
+    }
+    
+    
+    /**
+     * Reports an iteration of the solver of a calibrator.
+     * 
+     * @param calibrator    name of the class of the calibrator.
+     * @param iteration     number of the iteration, starting at 1.
+     * @param residual  residual of the current solution.
+     * @param damping   damping of the Levenberg-Marquardt algorithm used in the iteration.
+     * @param accepted  true if the step was accepted.
+     */
+    public static void iteration( String calibrator , int iteration , double residual , double damping , boolean accepted )
+    {
+        if( FLIGHT_RECORDER ) {
+            FlightRecorderEvents.iteration( calibrator , iteration , residual , damping , accepted );
+        }
+        for( CalibrationListener listener : listeners ) {
+            try {
+                listener.iterationCompleted( calibrator , iteration , residual , damping , accepted );
+            } catch( RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    
+    /**
+     * Begins the save or load of a bundle of calibrations.
+     * 
+     * @return  measurement to pass to {@link #endBundleFile(Measurement, String, String, int, long)}; null if bundle files are not instrumented.
+     */
+    public static Measurement beginBundleFile()
+    {
+        Object event = ( FLIGHT_RECORDER ) ? FlightRecorderEvents.beginBundleFile() : null;
+        if( event == null  &&  listeners.length == 0 ) {
+            return null;
+        }
+        return new Measurement( event );
+    }
+    
+    
+    /**
+     * Ends the save or load of a bundle of calibrations.
+     * 
+     * @param measurement   measurement returned by {@link #beginBundleFile()}.
+     * @param operation     {@link #SAVE} or {@link #LOAD}.
+     * @param path  path of the file.
+     * @param calibrations  number of calibrations in the bundle.
+     * @param bytes     size of the file in bytes.
+     */
+    public static void endBundleFile( Measurement measurement , String operation , String path , int calibrations , long bytes )
+    {
+        if( measurement == null ) {
+            return;
+        }
+        long nanos = System.nanoTime() - measurement.startNanos;
+        if( measurement.event != null ) {
+            FlightRecorderEvents.endBundleFile( measurement.event , operation , path , calibrations , bytes );
+        }
+        for( CalibrationListener listener : listeners ) {
+            try {
+                listener.bundleFileCompleted( operation , path , calibrations , bytes , nanos );
+            } catch( RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    
+    /**
+     * Begins the save or load of a single calibration.
+     * 
+     * @return  measurement to pass to {@link #endCalibrationFile(Measurement, String, String, String, long)}; null if calibration files are not instrumented.
+     */
+    public static Measurement beginCalibrationFile()
+    {
+        Object event = ( FLIGHT_RECORDER ) ? FlightRecorderEvents.beginCalibrationFile() : null;
+        if( event == null  &&  listeners.length == 0 ) {
+            return null;
+        }
+        return new Measurement( event );
+    }
+    
+    
+    /**
+     * Ends the save or load of a single calibration.
+     * 
+     * @param measurement   measurement returned by {@link #beginCalibrationFile()}.
+     * @param operation     {@link #SAVE} or {@link #LOAD}.
+     * @param calibration   name of the class of the calibration.
+     * @param path  path of the file.
+     * @param bytes     size of the file in bytes.
+     */
+    public static void endCalibrationFile( Measurement measurement , String operation , String calibration , String path , long bytes )
+    {
+        if( measurement == null ) {
+            return;
+        }
+        long nanos = System.nanoTime() - measurement.startNanos;
+        if( measurement.event != null ) {
+            FlightRecorderEvents.endCalibrationFile( measurement.event , operation , calibration , path , bytes );
+        }
+        for( CalibrationListener listener : listeners ) {
+            try {
+                listener.calibrationFileCompleted( operation , calibration , path , bytes , nanos );
+            } catch( RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    
+    /**
+     * Begins the conversion of a depth image into a point cloud.
+     * 
+     * @return  measurement to pass to {@link #endDepthFrameConversion(Measurement, String, int, int)}; null if the conversions are not instrumented.
+     */
+    public static Measurement beginDepthFrameConversion()
+    {
+        Object event = ( FLIGHT_RECORDER ) ? FlightRecorderEvents.beginDepthFrameConversion() : null;
+        if( event == null  &&  listeners.length == 0 ) {
+            return null;
+        }
+        return new Measurement( event );
+    }
+    
+    
+    /**
+     * Ends the conversion of a depth image into a point cloud.
+     * 
+     * @param measurement   measurement returned by {@link #beginDepthFrameConversion()}.
+     * @param mode  {@link #SERIAL}, {@link #PARALLEL}, or {@link #VOXELS}.
+     * @param pixels    number of pixels of the image.
+     * @param points    number of points of the resulting point cloud.
+     */
+    public static void endDepthFrameConversion( Measurement measurement , String mode , int pixels , int points )
+    {
+        if( measurement == null ) {
+            return;
+        }
+        long nanos = System.nanoTime() - measurement.startNanos;
+        if( measurement.event != null ) {
+            FlightRecorderEvents.endDepthFrameConversion( measurement.event , mode , pixels , points );
+        }
+        for( CalibrationListener listener : listeners ) {
+            try {
+                listener.depthFrameConverted( mode , pixels , points , nanos );
+            } catch( RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,20 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Event;
+
+
+
+/**
+ * Base of the Flight Recorder events of the library.
+ * <p>
+ * The events are only created by {@link FlightRecorderEvents}, which is not loaded on runtimes without the jdk.jfr module.
+ */
+public abstract class InstrumentationEvent
+    extends Event
+{
+    InstrumentationEvent()
+    {
+    }
+    
+}
@@ -0,0 +1,39 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+
+/**
+ * Unit of work being measured, returned by the begin methods of {@link Instrumentation} and passed to the matching end method.
+ * <p>
+ * It does not depend on Flight Recorder, so the library also runs on runtimes without the jdk.jfr module.
+ */
+public final class Measurement
+{
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Value of {@link System#nanoTime()} when the work began.
+     */
+    final long startNanos;
+    
+    /**
+     * Flight Recorder event that began with the work; null if Flight Recorder does not record it.
+     * It is typed as Object so that this class does not load jdk.jfr.
+     */
+    final Object event;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    Measurement( Object event )
+    {
+        this.event = event;
+        this.startNanos = System.nanoTime();
+    }
+    
+}
@@ -0,0 +1,41 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+
+/**
+ * Flight Recorder event emitted when the solver of a calibrator runs.
+ */
+@Name( "sensorCalibrationLibrary.Solve" )
+@Label( "Calibration Solve" )
+@Description( "The solver of a calibrator ran." )
+@Category( { "Sensor Calibration Library" } )
+public final class SolveEvent
+    extends InstrumentationEvent
+{
+    @Label( "Calibrator" )
+    String calibrator;
+    
+    @Label( "Iterations" )
+    int iterations;
+    
+    @Label( "Residual" )
+    double residual;
+    
+    @Label( "Converged" )
+    boolean converged;
+    
+    @Label( "Maximum Iterations Reached" )
+    boolean maxIterationsReached;
+    
+    
+    SolveEvent()
+    {
+    }
+    
+}
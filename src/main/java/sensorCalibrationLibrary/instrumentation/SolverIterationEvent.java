@@ -0,0 +1,47 @@
+package sensorCalibrationLibrary.instrumentation;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+
+/**
+ * Flight Recorder event emitted after each iteration of the solver of a calibrator.
+ * <p>
+ * It is disabled by default, since a calibration may run hundreds of iterations.
+ */
+@Name( "sensorCalibrationLibrary.SolverIteration" )
+@Label( "Solver Iteration" )
+@Description( "An iteration of the solver of a calibrator." )
+@Category( { "Sensor Calibration Library" } )
+@StackTrace( false )
+@Enabled( false )
+public final class SolverIterationEvent
+    extends InstrumentationEvent
+{
+    @Label( "Calibrator" )
+    String calibrator;
+    
+    @Label( "Iteration" )
+    int iteration;
+    
+    @Label( "Residual" )
+    double residual;
+    
+    @Label( "Damping" )
+    double damping;
+    
+    @Label( "Accepted" )
+    boolean accepted;
+    
+    
+    SolverIterationEvent()
+    {
+    }
+    
+}
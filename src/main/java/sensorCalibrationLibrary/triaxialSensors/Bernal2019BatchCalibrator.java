@@ -0,0 +1,191 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+
+
+/**
+ * Calibrates many independent triaxial sensors with {@link Bernal2019TriaxialCalibrator} on a given {@link Executor}.
+ * <p>
+ * The datasets are pulled from an {@link Iterator} only when there is room for them,
+ * so at most {@link #getMaxInFlight()} sensors are held in memory at any time, regardless of the size of the fleet.
+ * The executor can be a bounded thread pool or, on Java 21 or later, a virtual-thread-per-task executor.
+ * <p>
+ * The result of each sensor is passed to a sink as soon as it is available.
+ * A failure while reading the data or solving the calibration of a sensor is reported in its result, and does not abort the batch.
+ * A failure of the sink does not abort the batch either, but it is rethrown once every sensor has been processed.
+ */
+public class Bernal2019BatchCalibrator
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Executor that runs the calibration of each sensor.
+     */
+    private final Executor executor;
+    
+    /**
+     * Maximum number of sensors being calibrated at the same time.
+     */
+    private final int maxInFlight;
+    
+    /**
+     * Order of the polynomial used for the temperature dependence.
+     */
+    private int polynomialOrder;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs a {@link Bernal2019BatchCalibrator}.
+     * 
+     * @param executor  executor that runs the calibration of each sensor.
+     * @param maxInFlight   maximum number of sensors being calibrated (and held in memory) at the same time.
+     * @throws IllegalArgumentException     if maxInFlight is not positive.
+     */
+    public Bernal2019BatchCalibrator( Executor executor , int maxInFlight )
+    {
+        if( maxInFlight < 1 ) {
+            throw new IllegalArgumentException( "Bernal2019BatchCalibrator: the maximum number of sensors in flight must be positive." );
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.polynomialOrder = 0;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the maximum number of sensors being calibrated at the same time.
+     * 
+     * @return  maximum number of sensors being calibrated at the same time.
+     */
+    public int getMaxInFlight()
+    {
+        return this.maxInFlight;
+    }
+    
+    
+    /**
+     * Sets the order of the polynomial used for the temperature dependence of every sensor.
+     * 
+     * @param polynomialOrder   order of the polynomial used for the temperature dependence (0 by default).
+     */
+    public void setPolynomialOrder( int polynomialOrder )
+    {
+        this.polynomialOrder = polynomialOrder;
+    }
+    
+    
+    /**
+     * Calibrates every sensor given by the iterator, and blocks until all of them have been passed to the sink.
+     * <p>
+     * The sink is called from the threads of the executor, but never concurrently, so it does not need to be thread-safe.
+     * Results are passed in order of completion, not in the order of the iterator.
+     * 
+     * @param datasets  datasets of the sensors to be calibrated. It is only accessed from the calling thread.
+     * @param sink  consumer of the result of each sensor.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting; sensors already submitted keep running.
+     * @throws RejectedExecutionException   if the executor does not accept a sensor.
+     * @throws IllegalStateException    if the sink threw an exception for some sensors, once every sensor has been processed;
+     *          the first exception is its cause, and the others are suppressed by it.
+     */
+    public void calibrate( Iterator<? extends TriaxialSensorDataset> datasets , Consumer<? super Bernal2019BatchResult> sink ) throws InterruptedException
+    {
+        Semaphore permits = new Semaphore( this.maxInFlight );
+        Object sinkLock = new Object();
+        List<RuntimeException> sinkFailures = new ArrayList<RuntimeException>();
+        while( datasets.hasNext() ) {
+            // we do not pull the next dataset until there is room for it
+            permits.acquire();
+            try {
+                TriaxialSensorDataset dataset = datasets.next();
+                this.executor.execute( () -> {
+                    try {
+                        Bernal2019BatchResult result = this.calibrate( dataset );
+                        synchronized( sinkLock ) {
+                            try {
+                                sink.accept( result );
+                            } catch( RuntimeException e ) {
+                                sinkFailures.add( e );
+                            }
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                } );
+            } catch( RuntimeException e ) {
+                permits.release();
+                throw e;
+            }
+        }
+        // we wait for the sensors in flight
+        permits.acquire( this.maxInFlight );
+        permits.release( this.maxInFlight );
+        synchronized( sinkLock ) {
+            if( !sinkFailures.isEmpty() ) {
+                IllegalStateException failure = new IllegalStateException( "Bernal2019BatchCalibrator: the sink failed for " + sinkFailures.size() + " sensors." , sinkFailures.get( 0 ) );
+                for( int i=1; i<sinkFailures.size(); i++ ) {
+                    failure.addSuppressed( sinkFailures.get( i ) );
+                }
+                throw failure;
+            }
+        }
+    }
+    
+    
+    /**
+     * Calibrates a single sensor in the calling thread.
+     * 
+     * @param dataset   dataset of the sensor to be calibrated.
+     * @return  result of the calibration of the sensor.
+     */
+    public Bernal2019BatchResult calibrate( TriaxialSensorDataset dataset )
+    {
+        String sensorId = null;
+        long t0 = System.nanoTime();
+        long t1 = t0;
+        boolean ingested = false;
+        try {
+            sensorId = dataset.getSensorId();
+            Bernal2019TriaxialCalibrator calibrator = new Bernal2019TriaxialCalibrator();
+            calibrator.setPolynomialOrder( this.polynomialOrder );
+            dataset.addTo( calibrator );
+            if( !( calibrator.getMoments().getWeight() > 0.0 ) ) {
+                throw new IllegalStateException( "Bernal2019BatchCalibrator: there is no calibration data for sensor " + sensorId + "." );
+            }
+            t1 = System.nanoTime();
+            ingested = true;
+            calibrator.calibrate();
+            long t2 = System.nanoTime();
+            if( !Double.isFinite( calibrator.getResidual() ) ) {
+                throw new IllegalStateException( "Bernal2019BatchCalibrator: the calibration of sensor " + sensorId + " diverged." );
+            }
+            return new Bernal2019BatchResult( sensorId , calibrator.getCalibration() , null , calibrator.getIterations() , calibrator.getResidual() , calibrator.hasConverged() , t1 - t0 , t2 - t1 );
+        } catch( Exception e ) {
+            long t2 = System.nanoTime();
+            if( !ingested ) {
+                return new Bernal2019BatchResult( sensorId , null , e , 0 , Double.NaN , false , t2 - t0 , 0 );
+            }
+            return new Bernal2019BatchResult( sensorId , null , e , 0 , Double.NaN , false , t1 - t0 , t2 - t1 );
+        }
+    }
+    
+}
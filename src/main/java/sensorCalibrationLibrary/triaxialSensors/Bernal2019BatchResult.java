@@ -0,0 +1,176 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+
+/**
+ * Outcome of the calibration of a single sensor by {@link Bernal2019BatchCalibrator}.
+ */
+public class Bernal2019BatchResult
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Identifier of the sensor.
+     */
+    private final String sensorId;
+    
+    /**
+     * Resulting calibration; null if the calibration failed.
+     */
+    private final Bernal2019TriaxialCalibration calibration;
+    
+    /**
+     * Cause of the failure; null if the calibration succeeded.
+     */
+    private final Throwable failure;
+    
+    /**
+     * Number of iterations of the solver.
+     */
+    private final int iterations;
+    
+    /**
+     * Residual of the solution.
+     */
+    private final double residual;
+    
+    /**
+     * True if the solver converged.
+     */
+    private final boolean converged;
+    
+    /**
+     * Time spent adding the data of the sensor, in nanoseconds.
+     */
+    private final long ingestNanos;
+    
+    /**
+     * Time spent solving the calibration, in nanoseconds.
+     */
+    private final long calibrationNanos;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    Bernal2019BatchResult( String sensorId , Bernal2019TriaxialCalibration calibration , Throwable failure , int iterations , double residual , boolean converged , long ingestNanos , long calibrationNanos )
+    {
+        this.sensorId = sensorId;
+        this.calibration = calibration;
+        this.failure = failure;
+        this.iterations = iterations;
+        this.residual = residual;
+        this.converged = converged;
+        this.ingestNanos = ingestNanos;
+        this.calibrationNanos = calibrationNanos;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the identifier of the sensor.
+     * 
+     * @return  identifier of the sensor.
+     */
+    public String getSensorId()
+    {
+        return this.sensorId;
+    }
+    
+    
+    /**
+     * Returns true if the sensor was calibrated; false if reading its data or solving its calibration failed.
+     * 
+     * @return  true if the sensor was calibrated.
+     */
+    public boolean isSuccess()
+    {
+        return ( this.failure == null );
+    }
+    
+    
+    /**
+     * Returns the resulting calibration.
+     * 
+     * @return  resulting calibration; null if the calibration failed.
+     */
+    public Bernal2019TriaxialCalibration getCalibration()
+    {
+        return this.calibration;
+    }
+    
+    
+    /**
+     * Returns the cause of the failure.
+     * 
+     * @return  cause of the failure; null if the calibration succeeded.
+     */
+    public Throwable getFailure()
+    {
+        return this.failure;
+    }
+    
+    
+    /**
+     * Returns the number of iterations of the solver.
+     * 
+     * @return  number of iterations of the solver.
+     */
+    public int getIterations()
+    {
+        return this.iterations;
+    }
+    
+    
+    /**
+     * Returns the residual of the solution (see {@link Bernal2019TriaxialCalibrator#getResidual()}).
+     * 
+     * @return  residual of the solution; NaN if the calibration failed.
+     */
+    public double getResidual()
+    {
+        return this.residual;
+    }
+    
+    
+    /**
+     * Returns true if the solver met its convergence criteria.
+     * 
+     * @return  true if the solver converged.
+     */
+    public boolean hasConverged()
+    {
+        return this.converged;
+    }
+    
+    
+    /**
+     * Returns the time spent adding the data of the sensor.
+     * 
+     * @return  time spent adding the data of the sensor, in nanoseconds.
+     */
+    public long getIngestNanos()
+    {
+        return this.ingestNanos;
+    }
+    
+    
+    /**
+     * Returns the time spent solving the calibration.
+     * 
+     * @return  time spent solving the calibration, in nanoseconds.
+     */
+    public long getCalibrationNanos()
+    {
+        return this.calibrationNanos;
+    }
+    
+}
@@ -0,0 +1,119 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+
+/**
+ * Fit quality of a calibration over the data accumulated by a {@link Bernal2019TriaxialCalibrator}.
+ * <p>
+ * The statistics refer to the residuals y^2 - |x_calibrated|^2, weighted as the calibration data,
+ * and are computed by {@link Bernal2019TriaxialCalibrator#evaluate(TriaxialCalibration)} from the moment tensors, without a pass over the data.
+ */
+public class Bernal2019Evaluation
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Weighted root mean square of the residuals.
+     */
+    private final double residual;
+    
+    /**
+     * Weighted mean of the residuals.
+     */
+    private final double meanResidual;
+    
+    /**
+     * Weighted standard deviation of the residuals.
+     */
+    private final double residualStandardDeviation;
+    
+    /**
+     * {@link #residual} divided by the weighted root mean square of y^2.
+     */
+    private final double relativeResidual;
+    
+    /**
+     * Sum of weights of the calibration data.
+     */
+    private final double weight;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    Bernal2019Evaluation( double residual , double meanResidual , double residualStandardDeviation , double relativeResidual , double weight )
+    {
+        this.residual = residual;
+        this.meanResidual = meanResidual;
+        this.residualStandardDeviation = residualStandardDeviation;
+        this.relativeResidual = relativeResidual;
+        this.weight = weight;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the weighted root mean square of y^2 - |x_calibrated|^2, as {@link Bernal2019TriaxialCalibrator#getResidual()}.
+     * 
+     * @return  weighted root mean square of the residuals.
+     */
+    public double getResidual()
+    {
+        return this.residual;
+    }
+    
+    
+    /**
+     * Returns the weighted mean of y^2 - |x_calibrated|^2.
+     * <p>
+     * A mean far from 0 indicates a scale error of the calibration.
+     * 
+     * @return  weighted mean of the residuals.
+     */
+    public double getMeanResidual()
+    {
+        return this.meanResidual;
+    }
+    
+    
+    /**
+     * Returns the weighted standard deviation of y^2 - |x_calibrated|^2.
+     * 
+     * @return  weighted standard deviation of the residuals.
+     */
+    public double getResidualStandardDeviation()
+    {
+        return this.residualStandardDeviation;
+    }
+    
+    
+    /**
+     * Returns the residual relative to the weighted root mean square of y^2, so that sensors with different ranges can be compared.
+     * 
+     * @return  relative residual.
+     */
+    public double getRelativeResidual()
+    {
+        return this.relativeResidual;
+    }
+    
+    
+    /**
+     * Returns the sum of weights of the calibration data over which the calibration was evaluated.
+     * 
+     * @return  sum of weights of the calibration data.
+     */
+    public double getWeight()
+    {
+        return this.weight;
+    }
+    
+}
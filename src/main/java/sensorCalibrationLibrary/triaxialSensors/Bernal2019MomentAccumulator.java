@@ -0,0 +1,544 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+import java.nio.DoubleBuffer;
+
+
+
+/**
+ * Accumulates the normalized moment tensors used by {@link Bernal2019TriaxialCalibrator}.
+ * <p>
+ * The tensors are weighted averages over the calibration data,
+ * so two accumulators built from disjoint sets of data can be merged exactly with {@link #merge(Bernal2019MomentAccumulator)}.
+ * An accumulator is not thread-safe, but independent accumulators can be filled concurrently and then merged.
+ */
+public class Bernal2019MomentAccumulator
+{
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of unique elements of a fully symmetric 4x4x4x4 tensor.
+     */
+    static final int X4_SIZE = 35;
+    
+    /**
+     * Number of unique elements of a symmetric 4x4 matrix.
+     */
+    static final int Y2_SIZE = 10;
+    
+    /**
+     * Maps the index ((i*4+j)*4+k)*4+l of a 4x4x4x4 tensor to the index of its unique element in the packed storage.
+     */
+    static final int[] X4_INDEX = new int[256];
+    
+    /**
+     * Maps the index i*4+j of a 4x4 matrix to the index of its unique element in the packed storage.
+     */
+    static final int[] Y2_INDEX = new int[16];
+    
+    static {
+        // the unique elements are those with i <= j <= k <= l, and are packed in lexicographic order
+        int u = 0;
+        for( int i = 0; i < 4; i++ ) {
+            for( int j = i; j < 4; j++ ) {
+                for( int k = j; k < 4; k++ ) {
+                    for( int l = k; l < 4; l++ ) {
+                        int[] p = { i , j , k , l };
+                        // every permutation of (i,j,k,l) maps to the same unique element
+                        for( int a = 0; a < 4; a++ ) {
+                            for( int b = 0; b < 4; b++ ) {
+                                for( int c = 0; c < 4; c++ ) {
+                                    for( int d = 0; d < 4; d++ ) {
+                                        if( a != b && a != c && a != d && b != c && b != d && c != d )
+                                            X4_INDEX[ ( ( p[a] * 4 + p[b] ) * 4 + p[c] ) * 4 + p[d] ] = u;
+                                    }
+                                }
+                            }
+                        }
+                        u++;
+                    }
+                }
+            }
+        }
+        u = 0;
+        for( int i = 0; i < 4; i++ ) {
+            for( int j = i; j < 4; j++ ) {
+                Y2_INDEX[ i * 4 + j ] = u;
+                Y2_INDEX[ j * 4 + i ] = u;
+                u++;
+            }
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Order of the polynomial used for the temperature dependence.
+     */
+    private final int N;
+    
+    /**
+     * 2 * {@link #N} + 1.
+     */
+    private final int maxN21;
+    
+    /**
+     * 4 * {@link #N} + 1.
+     */
+    private final int maxN41;
+    
+    /**
+     * Sum of weights.
+     */
+    private double W;
+    
+    /**
+     * Factor by which the sum of weights of the previous measurements is multiplied each time a new measurement is added.
+     */
+    private double forgettingFactor;
+    
+    /**
+     * Lower limit of the range of the temperatures in the calibration data.
+     */
+    private double temperatureMin;
+    
+    /**
+     * Upper limit of the range of the temperatures in the calibration data.
+     */
+    private double temperatureMax;
+    
+    /**
+     * Unique elements of the tensor \sum_m w_m x_{m i} x_{m j} x_{m k} x_{m l} T_m^n / W ((4N+1)x35).
+     */
+    private final double[] X4;
+    
+    /**
+     * Unique elements of the tensor \sum_m w_m x_{m i} x_{m j} y_m^2 T_m^n / W ((2N+1)x10).
+     */
+    private final double[] Y2;
+    
+    /**
+     * \sum_m w_m y_m^4 / W.
+     */
+    private double Y4;
+    
+    /**
+     * Auxiliary vector (x1,x2,x3,1) of a single measurement.
+     */
+    private final double[] x1;
+    
+    /**
+     * Unique elements of x_i x_j x_k x_l of a single measurement.
+     */
+    private final double[] x4;
+    
+    /**
+     * Unique elements of x_i x_j y^2 of a single measurement.
+     */
+    private final double[] y2;
+    
+    /**
+     * y^4 of a single measurement.
+     */
+    private double y4;
+    
+    /**
+     * Powers of the temperature of a single measurement.
+     */
+    private final double[] Tn;
+    
+    /**
+     * Plain weighted sums of a block of measurements, folded into {@link #X4} once per block.
+     */
+    private final double[] X4sum;
+    
+    /**
+     * Plain weighted sums of a block of measurements, folded into {@link #Y2} once per block.
+     */
+    private final double[] Y2sum;
+    
+    /**
+     * Plain weighted sum of a block of measurements, folded into {@link #Y4} once per block.
+     */
+    private double Y4sum;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link Bernal2019MomentAccumulator}.
+     * 
+     * @param polynomialOrder   order of the polynomial used for the temperature dependence.
+     */
+    public Bernal2019MomentAccumulator( int polynomialOrder )
+    {
+        this.N = polynomialOrder;
+        this.maxN21 = 2 * polynomialOrder + 1;
+        this.maxN41 = 4 * polynomialOrder + 1;
+        this.X4 = new double[this.maxN41 * X4_SIZE];
+        this.Y2 = new double[this.maxN21 * Y2_SIZE];
+        this.x1 = new double[4];
+        this.x1[3] = 1.0;
+        this.x4 = new double[X4_SIZE];
+        this.y2 = new double[Y2_SIZE];
+        this.Tn = new double[this.maxN41];
+        this.X4sum = new double[this.maxN41 * X4_SIZE];
+        this.Y2sum = new double[this.maxN21 * Y2_SIZE];
+        this.forgettingFactor = 1.0;
+        this.reset();
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the order of the polynomial used for the temperature dependence.
+     * 
+     * @return  order of the polynomial used for the temperature dependence.
+     */
+    public int getPolynomialOrder()
+    {
+        return this.N;
+    }
+    
+    
+    /**
+     * Returns the sum of the weights of the accumulated measurements.
+     * 
+     * @return  sum of the weights of the accumulated measurements.
+     */
+    public double getWeight()
+    {
+        return this.W;
+    }
+    
+    
+    /**
+     * Returns the minimum temperature of the accumulated measurements.
+     * 
+     * @return  minimum temperature of the accumulated measurements; +infinity if there are none.
+     */
+    public double getTemperatureMin()
+    {
+        return this.temperatureMin;
+    }
+    
+    
+    /**
+     * Returns the maximum temperature of the accumulated measurements.
+     * 
+     * @return  maximum temperature of the accumulated measurements; -infinity if there are none.
+     */
+    public double getTemperatureMax()
+    {
+        return this.temperatureMax;
+    }
+    
+    
+    /**
+     * Sets the forgetting factor used to decay the contribution of old measurements.
+     * <p>
+     * Each time a measurement is added, the sum of weights of the previous measurements is multiplied by the forgetting factor,
+     * so a measurement added k measurements ago has its weight multiplied by forgettingFactor^k.
+     * When a block of measurements is added, the whole block is weighted as its last measurement.
+     * 
+     * @param forgettingFactor  forgetting factor in (0,1]. A value of 1 (the default) does not forget.
+     */
+    public void setForgettingFactor( double forgettingFactor )
+    {
+        if( !( forgettingFactor > 0.0  &&  forgettingFactor <= 1.0 ) ) {
+            throw new IllegalArgumentException( "Bernal2019MomentAccumulator: the forgetting factor must be in (0,1]." );
+        }
+        this.forgettingFactor = forgettingFactor;
+    }
+    
+    
+    /**
+     * Removes all the accumulated measurements.
+     */
+    public void reset()
+    {
+        this.W = 0.0;
+        this.temperatureMin = Double.POSITIVE_INFINITY;
+        this.temperatureMax = Double.NEGATIVE_INFINITY;
+        this.Y4 = 0.0;
+        for( int i = 0; i < this.Y2.length; i++ )
+            this.Y2[i] = 0.0;
+        for( int i = 0; i < this.X4.length; i++ )
+            this.X4[i] = 0.0;
+    }
+    
+    
+    /**
+     * Adds a single measurement.
+     * 
+     * @param w     weight of the measurement.
+     * @param x1    x-component of the measurement.
+     * @param x2    y-component of the measurement.
+     * @param x3    z-component of the measurement.
+     * @param T     temperature of the measurement.
+     * @param y     norm that the calibrated measurement should have.
+     */
+    public void add( double w , double x1 , double x2 , double x3 , double T , double y )
+    {
+        // we decay the previous measurements
+        this.W *= this.forgettingFactor;
+        // we define the auxiliary factor for this measurement
+        double alpha = w / ( this.W + w );
+        // and we add the contribution to the sum of weights
+        this.W += w;
+        // now we add the contribution of this measurement to the tensors
+        this.updateMonomials( x1 , x2 , x3 , T , y );
+        double beta = 1.0 - alpha;
+        this.Y4 = beta * this.Y4 + alpha * this.y4;
+        for( int n = 0; n < this.maxN21; n++ ) {
+            double alphaTn = alpha * this.Tn[n];
+            int offset = n * Y2_SIZE;
+            for( int u = 0; u < Y2_SIZE; u++ )
+                this.Y2[offset + u] = beta * this.Y2[offset + u] + alphaTn * this.y2[u];
+        }
+        for( int n = 0; n < this.maxN41; n++ ) {
+            double alphaTn = alpha * this.Tn[n];
+            int offset = n * X4_SIZE;
+            for( int u = 0; u < X4_SIZE; u++ )
+                this.X4[offset + u] = beta * this.X4[offset + u] + alphaTn * this.x4[u];
+        }
+    }
+    
+    
+    /**
+     * Adds a block of measurements stored in primitive arrays.
+     * <p>
+     * The m-th measurement is given by ( xyz[3*m] , xyz[3*m+1] , xyz[3*m+2] ), T[m], y[m], and w[m].
+     * The block is accumulated as plain weighted sums, and folded into the tensors once.
+     * 
+     * @param xyz   interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+     * @param T     temperatures of the measurements.
+     * @param y     norms that the calibrated measurements should have.
+     * @param w     weights of the measurements.
+     * @param offset    index of the first measurement of the block.
+     * @param count     number of measurements in the block.
+     */
+    public void add( double[] xyz , double[] T , double[] y , double[] w , int offset , int count )
+    {
+        this.resetSums();
+        double Wsum = 0.0;
+        for( int m = offset; m < offset + count; m++ ) {
+            int m3 = 3 * m;
+            this.updateMonomials( xyz[m3] , xyz[m3 + 1] , xyz[m3 + 2] , T[m] , y[m] );
+            this.accumulateMonomials( w[m] );
+            Wsum += w[m];
+        }
+        this.decay( count );
+        this.foldSums( Wsum );
+    }
+    
+    
+    /**
+     * Adds a block of measurements read from buffers.
+     * <p>
+     * The measurements are read from the current positions of the buffers, which are advanced accordingly.
+     * The block is accumulated as plain weighted sums, and folded into the tensors once.
+     * 
+     * @param xyz   interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+     * @param T     temperatures of the measurements.
+     * @param y     norms that the calibrated measurements should have.
+     * @param w     weights of the measurements.
+     * @param count     number of measurements in the block.
+     */
+    public void add( DoubleBuffer xyz , DoubleBuffer T , DoubleBuffer y , DoubleBuffer w , int count )
+    {
+        this.resetSums();
+        double Wsum = 0.0;
+        for( int m = 0; m < count; m++ ) {
+            double wm = w.get();
+            this.updateMonomials( xyz.get() , xyz.get() , xyz.get() , T.get() , y.get() );
+            this.accumulateMonomials( wm );
+            Wsum += wm;
+        }
+        this.decay( count );
+        this.foldSums( Wsum );
+    }
+    
+    
+    /**
+     * Merges the measurements accumulated by another {@link Bernal2019MomentAccumulator} into this one.
+     * <p>
+     * The result is the same as if all the measurements had been added to this accumulator.
+     * The forgetting factor is not applied: the measurements of both accumulators keep their weights.
+     * 
+     * @param other     accumulator to be merged into this one. It is not modified.
+     * @return  this accumulator.
+     * @throws IllegalArgumentException     if the polynomial orders of both accumulators differ.
+     */
+    public Bernal2019MomentAccumulator merge( Bernal2019MomentAccumulator other )
+    {
+        if( other.N != this.N ) {
+            throw new IllegalArgumentException( "Bernal2019MomentAccumulator: polynomial orders differ (" + this.N + " and " + other.N + ")." );
+        }
+        double Wnew = this.W + other.W;
+        if( Wnew != 0.0 ) {
+            double alpha = other.W / Wnew;
+            double beta = this.W / Wnew;
+            this.Y4 = beta * this.Y4 + alpha * other.Y4;
+            for( int i = 0; i < this.Y2.length; i++ )
+                this.Y2[i] = beta * this.Y2[i] + alpha * other.Y2[i];
+            for( int i = 0; i < this.X4.length; i++ )
+                this.X4[i] = beta * this.X4[i] + alpha * other.X4[i];
+            this.W = Wnew;
+        }
+        this.temperatureMin = Math.min( this.temperatureMin , other.temperatureMin );
+        this.temperatureMax = Math.max( this.temperatureMax , other.temperatureMax );
+        return this;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Decays the previous measurements as if count measurements had been added.
+     */
+    void decay( int count )
+    {
+        if( this.forgettingFactor < 1.0 ) {
+            this.W *= Math.pow( this.forgettingFactor , count );
+        }
+    }
+    
+    
+    /**
+     * Returns the element (n,i,j,k,l) of the normalized fourth-order tensor.
+     */
+    double X4( int n , int i , int j , int k , int l )
+    {
+        return this.X4[n * X4_SIZE + X4_INDEX[( ( i * 4 + j ) * 4 + k ) * 4 + l]];
+    }
+    
+    
+    /**
+     * Returns the element (n,i,j) of the normalized second-order tensor.
+     */
+    double Y2( int n , int i , int j )
+    {
+        return this.Y2[n * Y2_SIZE + Y2_INDEX[i * 4 + j]];
+    }
+    
+    
+    /**
+     * Returns the normalized weighted sum of y^4.
+     */
+    double Y4()
+    {
+        return this.Y4;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Computes the unique elements of the tensors built with a single measurement.
+     */
+    private void updateMonomials( double x1 , double x2 , double x3 , double T , double y )
+    {
+        this.x1[0] = x1;
+        this.x1[1] = x2;
+        this.x1[2] = x3;
+        // we keep track of the temperature range
+        this.temperatureMin = Math.min( this.temperatureMin , T );
+        this.temperatureMax = Math.max( this.temperatureMax , T );
+        // we define the square of the module
+        double y0 = y * y;
+        this.y4 = y0 * y0;
+        // zeroth-order tensors
+        this.Tn[0] = 1.0;
+        for( int n = 1; n < this.maxN41; n++ )
+            this.Tn[n] = this.Tn[n - 1] * T;
+        // unique elements of the second- and fourth-order tensors
+        int u2 = 0;
+        int u4 = 0;
+        for( int i = 0; i < 4; i++ ) {
+            for( int j = i; j < 4; j++ ) {
+                double xij = this.x1[i] * this.x1[j];
+                this.y2[u2++] = y0 * xij;
+                for( int k = j; k < 4; k++ ) {
+                    double xijk = xij * this.x1[k];
+                    for( int l = k; l < 4; l++ ) {
+                        this.x4[u4++] = xijk * this.x1[l];
+                    }  // end l
+                }  // end k
+            }  // end j
+        }  // end i
+    }
+    
+    
+    /**
+     * Adds the weighted monomials of a single measurement to the block sums.
+     */
+    private void accumulateMonomials( double w )
+    {
+        this.Y4sum += w * this.y4;
+        for( int n = 0; n < this.maxN21; n++ ) {
+            double wTn = w * this.Tn[n];
+            int offset = n * Y2_SIZE;
+            for( int u = 0; u < Y2_SIZE; u++ )
+                this.Y2sum[offset + u] += wTn * this.y2[u];
+        }
+        for( int n = 0; n < this.maxN41; n++ ) {
+            double wTn = w * this.Tn[n];
+            int offset = n * X4_SIZE;
+            for( int u = 0; u < X4_SIZE; u++ )
+                this.X4sum[offset + u] += wTn * this.x4[u];
+        }
+    }
+    
+    
+    /**
+     * Resets the block sums.
+     */
+    private void resetSums()
+    {
+        this.Y4sum = 0.0;
+        for( int i = 0; i < this.Y2sum.length; i++ )
+            this.Y2sum[i] = 0.0;
+        for( int i = 0; i < this.X4sum.length; i++ )
+            this.X4sum[i] = 0.0;
+    }
+    
+    
+    /**
+     * Folds the block sums, whose sum of weights is Wsum, into the normalized tensors.
+     */
+    private void foldSums( double Wsum )
+    {
+        double Wnew = this.W + Wsum;
+        if( Wnew == 0.0 )
+            return;
+        double beta = this.W / Wnew;
+        double gamma = 1.0 / Wnew;
+        this.Y4 = beta * this.Y4 + gamma * this.Y4sum;
+        for( int i = 0; i < this.Y2.length; i++ )
+            this.Y2[i] = beta * this.Y2[i] + gamma * this.Y2sum[i];
+        for( int i = 0; i < this.X4.length; i++ )
+            this.X4[i] = beta * this.X4[i] + gamma * this.X4sum[i];
+        this.W = Wnew;
+    }
+    
+}
@@ -0,0 +1,465 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import sensorCalibrationLibrary.LongIndexMap;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
+
+
+
+/**
+ * Ingest front-end of {@link Bernal2019TriaxialCalibrator} that bins oversampled calibration data.
+ * <p>
+ * Each measurement is assigned to a bin by the direction of (x1,x2,x3) on a spherical grid and by its temperature,
+ * and only the weighted means, the weighted mean square norm, and the sum of weights of each bin are kept.
+ * The grid divides the sphere in latitude bands of equal height, and each band in a number of azimuth sectors proportional to its circumference,
+ * so that the bins have approximately the same area.
+ * <p>
+ * When the bins are added to a calibrator with {@link Bernal2019TriaxialCalibrator#addCalibrationData(Bernal2019SphericalBinning)},
+ * each bin contributes a single measurement, its weighted mean, so the cost of the calibrator depends on the number of bins instead of the number of measurements.
+ * The weight of each bin is given by the {@link BinWeighting}; by default all bins weigh the same,
+ * so that orientations in which the sensor stood still for a long time do not dominate the fit.
+ * <p>
+ * The occupied bins are indexed by their packed bin indices in a {@link LongIndexMap},
+ * with the sums in flat arrays, so no objects are created per measurement.
+ */
+public class Bernal2019SphericalBinning
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC ENUMS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Weight given to the mean of each bin.
+     * <p>
+     * The weights are scaled so that their sum equals the sum of weights of the binned measurements.
+     */
+    public enum BinWeighting
+    {
+        /**
+         * Each bin weighs the sum of weights of its measurements, as if the measurements had been added one by one.
+         */
+        TOTAL ,
+        /**
+         * Each bin weighs the square root of the sum of weights of its measurements.
+         */
+        SQUARE_ROOT ,
+        /**
+         * All bins weigh the same, regardless of their number of measurements.
+         */
+        UNIFORM
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Largest number of latitude bands, so that the band and azimuth indices fit in 16 bits each.
+     */
+    private static final int MAX_LATITUDE_BINS = ( 1 << 15 ) - 1;
+    
+    /**
+     * Number of sums of each bin: w, w*x1, w*x2, w*x3, w*|x|^2, w*T, and w*y.
+     */
+    private static final int SUMS_PER_BIN = 7;
+    
+    /**
+     * Initial number of bins that fit in the table.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    
+    /**
+     * Name reported to the {@link Instrumentation}.
+     */
+    private static final String NAME = "Bernal2019SphericalBinning";
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of latitude bands.
+     */
+    private final int latitudeBins;
+    
+    /**
+     * Number of latitude bands divided by pi.
+     */
+    private final double inverseLatitudeBinHeight;
+    
+    /**
+     * Number of azimuth sectors of each latitude band, divided by 2*pi.
+     */
+    private final double[] inverseAzimuthBinWidth;
+    
+    /**
+     * Number of azimuth sectors of each latitude band.
+     */
+    private final int[] azimuthBins;
+    
+    /**
+     * Width of the temperature bins.
+     */
+    private final double temperatureBinWidth;
+    
+    /**
+     * Inverse of {@link #temperatureBinWidth}.
+     */
+    private final double inverseTemperatureBinWidth;
+    
+    /**
+     * Weight given to the mean of each bin.
+     */
+    private BinWeighting weighting = BinWeighting.UNIFORM;
+    
+    /**
+     * Index of each occupied bin by its packed bin indices, in the order the bins were first occupied.
+     */
+    private final LongIndexMap bins;
+    
+    /**
+     * Weighted sums of each occupied bin ({@value #SUMS_PER_BIN} per bin).
+     */
+    private double[] sums;
+    
+    /**
+     * Number of binned measurements.
+     */
+    private long count;
+    
+    /**
+     * Weight of each bin, reused by {@link #addTo(Bernal2019MomentAccumulator)}.
+     */
+    private double[] binWeights = new double[0];
+    
+    /**
+     * Interleaved means of (x1,x2,x3) of the bins, reused by {@link #addTo(Bernal2019MomentAccumulator)}.
+     */
+    private double[] binXyz = new double[0];
+    
+    /**
+     * Mean temperatures of the bins, reused by {@link #addTo(Bernal2019MomentAccumulator)}.
+     */
+    private double[] binT = new double[0];
+    
+    /**
+     * Mean norms of the bins, reused by {@link #addTo(Bernal2019MomentAccumulator)}.
+     */
+    private double[] binY = new double[0];
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Constructs an empty {@link Bernal2019SphericalBinning}.
+     * 
+     * @param latitudeBins  number of latitude bands of the spherical grid; the bins span about 180/latitudeBins degrees.
+     * @param temperatureBinWidth   width of the temperature bins; infinite to bin by direction only.
+     * @throws IllegalArgumentException     if latitudeBins is not between 1 and 32767, or temperatureBinWidth is not positive.
+     */
+    public Bernal2019SphericalBinning( int latitudeBins , double temperatureBinWidth )
+    {
+        if( latitudeBins < 1  ||  latitudeBins > MAX_LATITUDE_BINS ) {
+            throw new IllegalArgumentException( "Bernal2019SphericalBinning: the number of latitude bins must be between 1 and " + MAX_LATITUDE_BINS + "." );
+        }
+        if( !( temperatureBinWidth > 0.0 ) ) {
+            throw new IllegalArgumentException( "Bernal2019SphericalBinning: the temperature bin width must be positive." );
+        }
+        this.latitudeBins = latitudeBins;
+        this.inverseLatitudeBinHeight = latitudeBins / Math.PI;
+        this.azimuthBins = new int[latitudeBins];
+        this.inverseAzimuthBinWidth = new double[latitudeBins];
+        for( int b = 0; b < latitudeBins; b++ ) {
+            double latitude = ( b + 0.5 ) * Math.PI / latitudeBins - 0.5 * Math.PI;
+            this.azimuthBins[b] = Math.max( 1 , (int)Math.round( 2.0 * latitudeBins * Math.cos( latitude ) ) );
+            this.inverseAzimuthBinWidth[b] = this.azimuthBins[b] / ( 2.0 * Math.PI );
+        }
+        this.temperatureBinWidth = temperatureBinWidth;
+        this.inverseTemperatureBinWidth = 1.0 / temperatureBinWidth;
+        this.bins = new LongIndexMap( INITIAL_CAPACITY );
+        this.sums = new double[SUMS_PER_BIN * INITIAL_CAPACITY];
+        this.count = 0;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the number of latitude bands of the spherical grid.
+     * 
+     * @return  number of latitude bands of the spherical grid.
+     */
+    public int getLatitudeBins()
+    {
+        return this.latitudeBins;
+    }
+    
+    
+    /**
+     * Returns the width of the temperature bins.
+     * 
+     * @return  width of the temperature bins.
+     */
+    public double getTemperatureBinWidth()
+    {
+        return this.temperatureBinWidth;
+    }
+    
+    
+    /**
+     * Sets the weight given to the mean of each bin when the bins are added to a calibrator.
+     * 
+     * @param weighting     weight given to the mean of each bin ({@link BinWeighting#UNIFORM} by default).
+     */
+    public void setWeighting( BinWeighting weighting )
+    {
+        this.weighting = weighting;
+    }
+    
+    
+    /**
+     * Returns the weight given to the mean of each bin when the bins are added to a calibrator.
+     * 
+     * @return  weight given to the mean of each bin.
+     */
+    public BinWeighting getWeighting()
+    {
+        return this.weighting;
+    }
+    
+    
+    /**
+     * Returns the number of occupied bins.
+     * 
+     * @return  number of occupied bins.
+     */
+    public int size()
+    {
+        return this.bins.size();
+    }
+    
+    
+    /**
+     * Returns the number of binned measurements.
+     * 
+     * @return  number of binned measurements.
+     */
+    public long getNumberOfMeasurements()
+    {
+        return this.count;
+    }
+    
+    
+    /**
+     * Removes all the measurements, keeping the capacity.
+     */
+    public void clear()
+    {
+        this.bins.clear();
+        this.count = 0;
+    }
+    
+    
+    /**
+     * Adds a single measurement to its bin.
+     * 
+     * @param w     weight of the measurement.
+     * @param x1    x-component of the measurement.
+     * @param x2    y-component of the measurement.
+     * @param x3    z-component of the measurement.
+     * @param T     temperature of the measurement.
+     * @param y     norm that the calibrated measurement should have.
+     * @throws IllegalArgumentException     if the temperature is out of the range of the temperature bins.
+     */
+    public void add( double w , double x1 , double x2 , double x3 , double T , double y )
+    {
+        int v = this.bin( this.key( x1 , x2 , x3 , T ) );
+        int offset = SUMS_PER_BIN * v;
+        this.sums[offset] += w;
+        this.sums[offset + 1] += w * x1;
+        this.sums[offset + 2] += w * x2;
+        this.sums[offset + 3] += w * x3;
+        this.sums[offset + 4] += w * ( x1 * x1 + x2 * x2 + x3 * x3 );
+        this.sums[offset + 5] += w * T;
+        this.sums[offset + 6] += w * y;
+        this.count++;
+    }
+    
+    
+    /**
+     * Adds a block of measurements stored in primitive arrays.
+     * <p>
+     * The m-th measurement is given by ( xyz[3*m] , xyz[3*m+1] , xyz[3*m+2] ), T[m], y[m], and w[m].
+     * 
+     * @param xyz   interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+     * @param T     temperatures of the measurements.
+     * @param y     norms that the calibrated measurements should have.
+     * @param w     weights of the measurements.
+     * @param offset    index of the first measurement of the block.
+     * @param count     number of measurements in the block.
+     * @throws IllegalArgumentException     if a temperature is out of the range of the temperature bins.
+     */
+    public void add( double[] xyz , double[] T , double[] y , double[] w , int offset , int count )
+    {
+        Measurement measurement = Instrumentation.beginIngest();
+        for( int m = offset; m < offset + count; m++ ) {
+            int m3 = 3 * m;
+            this.add( w[m] , xyz[m3] , xyz[m3 + 1] , xyz[m3 + 2] , T[m] , y[m] );
+        }
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+    
+    
+    /**
+     * Adds a block of measurements read from buffers.
+     * <p>
+     * The measurements are read from the current positions of the buffers, which are advanced accordingly.
+     * 
+     * @param xyz   interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+     * @param T     temperatures of the measurements.
+     * @param y     norms that the calibrated measurements should have.
+     * @param w     weights of the measurements.
+     * @param count     number of measurements in the block.
+     * @throws IllegalArgumentException     if a temperature is out of the range of the temperature bins.
+     */
+    public void add( DoubleBuffer xyz , DoubleBuffer T , DoubleBuffer y , DoubleBuffer w , int count )
+    {
+        Measurement measurement = Instrumentation.beginIngest();
+        for( int m = 0; m < count; m++ ) {
+            double wm = w.get();
+            this.add( wm , xyz.get() , xyz.get() , xyz.get() , T.get() , y.get() );
+        }
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Adds the weighted mean of each occupied bin to the moment tensors, weighted as given by {@link #weighting}.
+     * <p>
+     * The mean of the measurements of a bin lies inside the surface on which they are spread,
+     * so the mean of (x1,x2,x3) is scaled to the weighted root mean square norm of the bin, which removes that bias to first order.
+     * 
+     * @return  number of measurements added to the moment tensors.
+     */
+    int addTo( Bernal2019MomentAccumulator moments )
+    {
+        // first we compute the weight of each bin, and the scale that preserves the sum of weights
+        int size = this.bins.size();
+        if( this.binWeights.length < size ) {
+            this.binWeights = new double[size];
+            this.binXyz = new double[3 * size];
+            this.binT = new double[size];
+            this.binY = new double[size];
+        }
+        double[] w = this.binWeights;
+        double totalWeight = 0.0;
+        double totalBinWeight = 0.0;
+        int n = 0;
+        for( int v = 0; v < size; v++ ) {
+            double Wv = this.sums[SUMS_PER_BIN * v];
+            if( !( Wv > 0.0 ) )
+                continue;
+            totalWeight += Wv;
+            switch( this.weighting ) {
+                case TOTAL:
+                    w[v] = Wv;
+                    break;
+                case SQUARE_ROOT:
+                    w[v] = Math.sqrt( Wv );
+                    break;
+                default:
+                    w[v] = 1.0;
+                    break;
+            }
+            totalBinWeight += w[v];
+            n++;
+        }
+        if( n == 0 )
+            return 0;
+        double scale = totalWeight / totalBinWeight;
+        // then the weighted mean of each bin; the weights are scaled in place, as bin m never comes after bin v
+        double[] xyz = this.binXyz;
+        double[] T = this.binT;
+        double[] y = this.binY;
+        int m = 0;
+        for( int v = 0; v < size; v++ ) {
+            int offset = SUMS_PER_BIN * v;
+            double Wv = this.sums[offset];
+            if( !( Wv > 0.0 ) )
+                continue;
+            double x1 = this.sums[offset + 1];
+            double x2 = this.sums[offset + 2];
+            double x3 = this.sums[offset + 3];
+            double norm2 = x1 * x1 + x2 * x2 + x3 * x3;
+            double scaleNorm = ( norm2 > 0.0 ) ? Math.sqrt( this.sums[offset + 4] * Wv / norm2 ) : 0.0;
+            int m3 = 3 * m;
+            xyz[m3] = scaleNorm * x1 / Wv;
+            xyz[m3 + 1] = scaleNorm * x2 / Wv;
+            xyz[m3 + 2] = scaleNorm * x3 / Wv;
+            T[m] = this.sums[offset + 5] / Wv;
+            y[m] = this.sums[offset + 6] / Wv;
+            w[m] = scale * w[v];
+            m++;
+        }
+        moments.add( xyz , T , y , w , 0 , n );
+        return n;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the packed indices of the bin of a measurement: latitude band (16 bits), azimuth sector (16 bits), and temperature bin (32 bits).
+     */
+    private long key( double x1 , double x2 , double x3 , double T )
+    {
+        double t = Math.floor( T * this.inverseTemperatureBinWidth );
+        if( !( Math.abs( t ) <= Integer.MAX_VALUE ) ) {
+            throw new IllegalArgumentException( "Bernal2019SphericalBinning: the temperature is out of the range of the temperature bins." );
+        }
+        double latitude = Math.atan2( x3 , Math.hypot( x1 , x2 ) );
+        int band = Math.min( (int)( ( latitude + 0.5 * Math.PI ) * this.inverseLatitudeBinHeight ) , this.latitudeBins - 1 );
+        double azimuth = Math.atan2( x2 , x1 );
+        int sector = Math.min( (int)( ( azimuth + Math.PI ) * this.inverseAzimuthBinWidth[band] ) , this.azimuthBins[band] - 1 );
+        return ( (long)band << 48 ) | ( (long)sector << 32 ) | ( (long)t & 0xFFFFFFFFL );
+    }
+    
+    
+    /**
+     * Returns the index of the bin with the given key, occupying a new bin with zero sums if it was empty.
+     */
+    private int bin( long key )
+    {
+        int size = this.bins.size();
+        int v = this.bins.add( key );
+        if( v < size )
+            return v;
+        if( SUMS_PER_BIN * v == this.sums.length )
+            this.sums = Arrays.copyOf( this.sums , SUMS_PER_BIN * this.bins.capacity() );
+        Arrays.fill( this.sums , SUMS_PER_BIN * v , SUMS_PER_BIN * ( v + 1 ) , 0.0 );
+        return v;
+    }
+    
+}
@@ -3,10 +3,16 @@ package sensorCalibrationLibrary.triaxialSensors;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+
+import sensorCalibrationLibrary.BinaryCalibrationFormat;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
 
 
 
@@ -37,14 +43,34 @@ public class Bernal2019TriaxialCalibration
      */
     private double temperature;
     
-    private double temperatureMin;
-    private double temperatureMax;
+    /**
+     * Lower limit of the temperature range in which the calibration is valid.
+     */
+    private double temperatureMin = Double.NEGATIVE_INFINITY;
+    
+    /**
+     * Upper limit of the temperature range in which the calibration is valid.
+     */
+    private double temperatureMax = Double.POSITIVE_INFINITY;
+    
+    /**
+     * Temperature change below which the cached coefficients {@link #Kc} are not recomputed.
+     */
+    private double temperatureTolerance;
     
     /**
      * Calibration coefficients.
      */
     private double[] z;
     
+    /**
+     * Calibration coefficients evaluated at {@link #temperature}: (K11,K21,K22,K31,K32,K33,c1,c2,c3).
+     * <p>
+     * Since the temperature changes much slower than the measurements arrive, the polynomial is evaluated only when the temperature changes,
+     * and each correction reduces to a lower-triangular matrix product plus an offset.
+     */
+    private final double[] Kc = new double[9];
+    
     
     
     ////////////////////////////////////////////////////////////////
@@ -55,25 +81,138 @@ public class Bernal2019TriaxialCalibration
     {
         this.reset( calibrationCoefficients.length/9-1 );
         System.arraycopy( calibrationCoefficients , 0 ,  this.z , 0 , calibrationCoefficients.length );
+        this.evaluateCoefficients();
+    }
+    
+    
+    /**
+     * Sets the range of temperatures in which the calibration is valid.
+     * <p>
+     * Temperatures given to {@link #setTemperature(double)} are clamped to this range,
+     * and so is the current temperature, even if it moves less than the tolerance given by {@link #setTemperatureTolerance(double)}.
+     * The range is unbounded by default; {@link #load(String)} reads the range "0.0 0.0" of files saved by earlier versions as unbounded too.
+     * 
+     * @param temperatureMin    lower limit of the temperature range.
+     * @param temperatureMax    upper limit of the temperature range.
+     * @throws IllegalArgumentException     if temperatureMin is larger than temperatureMax, or any of them is NaN.
+     */
+    public void setTemperatureRange( double temperatureMin , double temperatureMax )
+    {
+        if( !( temperatureMin <= temperatureMax ) ) {
+            throw new IllegalArgumentException( "TriaxialCalibration: the lower limit of the temperature range must not be larger than the upper limit." );
+        }
+        this.temperatureMin = temperatureMin;
+        this.temperatureMax = temperatureMax;
+        this.clampTemperature();
+    }
+    
+    
+    /**
+     * Sets the temperature change below which the cached coefficients are not recomputed.
+     * 
+     * @param epsilon   temperature tolerance (0 by default).
+     */
+    public void setTemperatureTolerance( double epsilon )
+    {
+        this.temperatureTolerance = epsilon;
+    }
+    
+    
+    /**
+     * Sets the temperature used to correct measurements.
+     * <p>
+     * The temperature is clamped to the range given by {@link #setTemperatureRange(double, double)},
+     * and the calibration coefficients are only re-evaluated if it moves more than the tolerance given by {@link #setTemperatureTolerance(double)}.
+     * 
+     * @param temperature   temperature used to correct measurements.
+     */
+    public void setTemperature( double temperature )
+    {
+        double clampedTemperature = Math.max( this.temperatureMin , Math.min( temperature , this.temperatureMax ) );
+        if( Math.abs( clampedTemperature - this.temperature ) > this.temperatureTolerance ) {
+            this.temperature = clampedTemperature;
+            this.evaluateCoefficients();
+        }
+    }
+    
+    
+    /**
+     * Returns the temperature used to correct measurements.
+     * 
+     * @return  temperature used to correct measurements.
+     */
+    public double getTemperature()
+    {
+        return this.temperature;
+    }
+    
+    
+    public void correct( double[] input , double[] output )
+    {
+        double x = input[0];
+        double y = input[1];
+        double z = input[2];
+        output[0] = this.Kc[0] * x                                          +  this.Kc[6];
+        output[1] = this.Kc[1] * x  +  this.Kc[2] * y                       +  this.Kc[7];
+        output[2] = this.Kc[3] * x  +  this.Kc[4] * y  +  this.Kc[5] * z  +  this.Kc[8];
     }
     
     
-    public double[] correct( double[] input )
+    public void correctBatch( double[] interleavedXYZ , int offset , int count , double[] output )
     {
-      double[] output = new double[3];
-      double Tn = 1.0;
-      for(int n9=0; n9<=this.N9; n9+=9) {
-          output[0] += ( this.z[n9+0] * input[0]                                                          +  this.z[n9+6] ) * Tn;
-          output[1] += ( this.z[n9+1] * input[0]  +  this.z[n9+2] * input[1]                              +  this.z[n9+7] ) * Tn;
-          output[2] += ( this.z[n9+3] * input[0]  +  this.z[n9+4] * input[1]  +  this.z[n9+5] * input[2]  +  this.z[n9+8] ) * Tn;
-          Tn *= this.temperature;
-      }
-      return output;
+        double K11 = this.Kc[0];
+        double K21 = this.Kc[1];
+        double K22 = this.Kc[2];
+        double K31 = this.Kc[3];
+        double K32 = this.Kc[4];
+        double K33 = this.Kc[5];
+        double c1 = this.Kc[6];
+        double c2 = this.Kc[7];
+        double c3 = this.Kc[8];
+        int end = offset + 3 * count;
+        for( int i=offset; i<end; i+=3 ) {
+            double x = interleavedXYZ[i];
+            double y = interleavedXYZ[i+1];
+            double z = interleavedXYZ[i+2];
+            output[i] = K11 * x                      +  c1;
+            output[i+1] = K21 * x  +  K22 * y            +  c2;
+            output[i+2] = K31 * x  +  K32 * y  +  K33 * z  +  c3;
+        }
+    }
+    
+    
+    public void correctBatch( double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        TriaxialCorrectionKernel.get().correct( this.Kc , x , y , z , offset , count , outX , outY , outZ );
+    }
+    
+    
+    /**
+     * Corrects a batch of triaxial measurements stored as structure of arrays, each one at its own temperature, without allocating memory.
+     * <p>
+     * The temperature of each measurement is clamped to the range given by {@link #setTemperatureRange(double, double)},
+     * and the result is the same as calling {@link #setTemperature(double)} with a zero tolerance followed by {@link #correct(double[], double[])}.
+     * The temperature given by {@link #setTemperature(double)} is neither used nor modified.
+     * 
+     * @param x     x-components of the raw measurements.
+     * @param y     y-components of the raw measurements.
+     * @param z     z-components of the raw measurements.
+     * @param T     temperatures of the measurements.
+     * @param offset    index of the first measurement to be corrected.
+     * @param count     number of measurements to be corrected.
+     * @param outX  array in which the x-components of the corrected measurements are stored.
+     * @param outY  array in which the y-components of the corrected measurements are stored.
+     * @param outZ  array in which the z-components of the corrected measurements are stored.
+     */
+    public void correctBatch( double[] x , double[] y , double[] z , double[] T , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        TriaxialCorrectionKernel.get().correct( this.z , this.temperatureMin , this.temperatureMax , x , y , z , T , offset , count , outX , outY , outZ );
     }
     
     
     public void save( String path )
     {
+        Measurement measurement = Instrumentation.beginCalibrationFile();
         try {
             // Create calibration file.
             BufferedWriter writer = new BufferedWriter( new FileWriter( path ) );
@@ -82,7 +221,8 @@ public class Bernal2019TriaxialCalibration
             // Store calibration.
             for( int n=0; n<=this.N; n++ ) {
                 for( int i=0; i<9; i++ ) {
-                    writer.write( " " + this.z[n*9+i] );
+                    writer.write( ' ' );
+                    writer.write( Double.toString( this.z[n*9+i] ) );
                 }
                 writer.write( "\n" );
             }
@@ -91,6 +231,7 @@ public class Bernal2019TriaxialCalibration
             calibrationFile.println( "\n\n\n" );*/
             writer.flush();
             writer.close();
+            Instrumentation.endCalibrationFile( measurement , Instrumentation.SAVE , this.getClass().getSimpleName() , path , new File( path ).length() );
         } catch( IOException e ) {
             e.printStackTrace();
         }
@@ -99,6 +240,7 @@ public class Bernal2019TriaxialCalibration
     
     public void load( String path )
     {
+        Measurement measurement = Instrumentation.beginCalibrationFile();
         try {
             // Open the file.
             FileInputStream fstream = new FileInputStream( path );
@@ -107,32 +249,32 @@ public class Bernal2019TriaxialCalibration
             String strLine = br.readLine();
             String[] strValues = strLine.split(" ");
             int polynomialOrder = Integer.parseInt( strValues[0] );
-            this.temperatureMin = Double.parseDouble( strValues[1] );
-            this.temperatureMax = Double.parseDouble( strValues[2] );
+            double temperatureMin = Double.parseDouble( strValues[1] );
+            double temperatureMax = Double.parseDouble( strValues[2] );
+            if( !( temperatureMin <= temperatureMax ) ) throw new Exception( "TriaxialCalibration: wrong calibration." );
+            // files saved before the range defaulted to ( -Infinity , Infinity ) store an unset range as "0.0 0.0"
+            if( temperatureMin == 0.0  &&  temperatureMax == 0.0 ) {
+                temperatureMin = Double.NEGATIVE_INFINITY;
+                temperatureMax = Double.POSITIVE_INFINITY;
+            }
+            this.temperatureMin = temperatureMin;
+            this.temperatureMax = temperatureMax;
             this.reset( polynomialOrder );
             // Obtain the matrix elements and the offset for each degree.
             for( int n=0; n<=polynomialOrder; n++ ) {
                 strLine = br.readLine();
-                strValues = strLine.split(" ");
-                double[] theValues = new double[0];
-                for( int i=0; i<strValues.length; i++ ) {
-                    try {
-                        double newDouble = Double.parseDouble( strValues[i] );
-                        double[] newValues = new double[theValues.length+1];
-                        for(int j=0; j<theValues.length; j++) newValues[j] = theValues[j];
-                        newValues[ theValues.length ] = newDouble;
-                        theValues = newValues;
-                    }catch( NumberFormatException e ){
-                    }
-                }
-                if( theValues.length != 9 ) throw new Exception( "TriaxialCalibration: wrong calibration." );
+                strValues = strLine.trim().split( "\\s+" );
+                if( strValues.length != 9 ) throw new Exception( "TriaxialCalibration: wrong calibration." );
                 for(int i=0; i<9; i++) {
-                    this.z[n*9+i] = theValues[i];
+                    this.z[n*9+i] = Double.parseDouble( strValues[i] );
                 }
             }
+            this.clampTemperature();
+            long bytes = fstream.getChannel().size();
             // Close.
             br.close();
             fstream.close();
+            Instrumentation.endCalibrationFile( measurement , Instrumentation.LOAD , this.getClass().getSimpleName() , path , bytes );
         } catch( Exception e ) {
             e.printStackTrace();
         }
@@ -140,6 +282,63 @@ public class Bernal2019TriaxialCalibration
     
     
     
+    public int binarySize()
+    {
+        // header, polynomial order (padded to 8 bytes), temperature range, and coefficients
+        return BinaryCalibrationFormat.HEADER_SIZE + 8 + 2*8 + this.z.length*8;
+    }
+    
+    
+    public void writeBinary( ByteBuffer buffer )
+    {
+        ByteBuffer record = BinaryCalibrationFormat.beginRecord( buffer );
+        record.putInt( this.N );
+        record.putInt( 0 );
+        record.putDouble( this.temperatureMin );
+        record.putDouble( this.temperatureMax );
+        record.asDoubleBuffer().put( this.z );
+        record.position( record.position() + this.z.length*8 );
+        BinaryCalibrationFormat.endRecord( buffer , record , BinaryCalibrationFormat.TYPE_BERNAL2019 );
+    }
+    
+    
+    public void readBinary( ByteBuffer buffer )
+    {
+        ByteBuffer record = BinaryCalibrationFormat.beginReading( buffer , BinaryCalibrationFormat.TYPE_BERNAL2019 );
+        int polynomialOrder = record.getInt();
+        record.getInt();
+        if( polynomialOrder < 0  ||  record.remaining() != 2*8 + 9*(polynomialOrder+1)*8 ) {
+            throw new IllegalArgumentException( "TriaxialCalibration: wrong calibration." );
+        }
+        double temperatureMin = record.getDouble();
+        double temperatureMax = record.getDouble();
+        if( !( temperatureMin <= temperatureMax ) ) {
+            throw new IllegalArgumentException( "TriaxialCalibration: wrong calibration." );
+        }
+        this.temperatureMin = temperatureMin;
+        this.temperatureMax = temperatureMax;
+        this.reset( polynomialOrder );
+        record.asDoubleBuffer().get( this.z );
+        this.clampTemperature();
+        BinaryCalibrationFormat.endReading( buffer , record );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the calibration coefficients ( (K11,K21,K22,K31,K32,K33,c1,c2,c3)^(0) , ... , (...)^(N) ), without copying them.
+     */
+    double[] getCoefficients()
+    {
+        return this.z;
+    }
+    
+    
+    
     ////////////////////////////////////////////////////////////////
     // PRIVATE METHODS
     ////////////////////////////////////////////////////////////////
@@ -151,4 +350,32 @@ public class Bernal2019TriaxialCalibration
         this.z = new double[9*(polynomialOrder+1)];
     }
     
+    
+    /**
+     * Clamps {@link #temperature} to the temperature range, and evaluates the calibration coefficients at it regardless of the tolerance.
+     */
+    private void clampTemperature()
+    {
+        this.temperature = Math.max( this.temperatureMin , Math.min( this.temperature , this.temperatureMax ) );
+        this.evaluateCoefficients();
+    }
+    
+    
+    /**
+     * Evaluates the temperature polynomial of each calibration coefficient at {@link #temperature}, and stores the result in {@link #Kc}.
+     */
+    private void evaluateCoefficients()
+    {
+        for( int i=0; i<9; i++ ) {
+            this.Kc[i] = 0.0;
+        }
+        double Tn = 1.0;
+        for(int n9=0; n9<=this.N9; n9+=9) {
+            for( int i=0; i<9; i++ ) {
+                this.Kc[i] += this.z[n9+i] * Tn;
+            }
+            Tn *= this.temperature;
+        }
+    }
+    
 }
@@ -1,6 +1,16 @@
 package sensorCalibrationLibrary.triaxialSensors;
 
 
+import java.nio.DoubleBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
+
+
 
 public class Bernal2019TriaxialCalibrator
 {
@@ -9,7 +19,7 @@ public class Bernal2019TriaxialCalibrator
     ////////////////////////////////////////////////////////////////
     
     /**
-     * Iterative calibration method will stop if solution does not improve after {@link #MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT} iterations.
+     * Iterative calibration method will stop if the step is rejected {@link #MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT} consecutive iterations.
      */
     private static final int MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT = 20;
     
@@ -17,6 +27,45 @@ public class Bernal2019TriaxialCalibrator
      * Iterative calibration method will stop if not converged after {@link #MAX_CALIBRATION_ITERATIONS} iterations.
      */
     private static final int MAX_CALIBRATION_ITERATIONS = 1000;
+    
+    /**
+     * Initial damping of the Levenberg-Marquardt algorithm relative to the largest diagonal element of J^T*W*J.
+     */
+    private static final double INITIAL_DAMPING_FACTOR = 1.0e-3;
+    
+    /**
+     * Default tolerances used to decide that the solver has converged.
+     */
+    private static final double DEFAULT_STEP_RELATIVE_TOLERANCE = 1.0e-10;
+    private static final double DEFAULT_STEP_ABSOLUTE_TOLERANCE = 1.0e-12;
+    private static final double DEFAULT_GRADIENT_RELATIVE_TOLERANCE = 1.0e-12;
+    private static final double DEFAULT_GRADIENT_ABSOLUTE_TOLERANCE = 1.0e-15;
+    
+    /**
+     * Minimum number of measurements assigned to each shard by {@link #addCalibrationDataParallel(double[], double[], double[], double[], int, int)}.
+     */
+    private static final int MIN_MEASUREMENTS_PER_SHARD = 4096;
+    
+    /**
+     * Minimum polynomial order for which the normal equations are assembled in parallel when a pool is given with {@link #setAssemblyPool(ForkJoinPool)}.
+     * Below it, the scheduling overhead exceeds the assembly cost.
+     */
+    private static final int MIN_POLYNOMIAL_ORDER_FOR_PARALLEL_ASSEMBLY = 3;
+    
+    /**
+     * Row index a of the pairs (a,b) that correspond to each of the 9 coefficients (K11,K21,K22,K31,K32,K33,c1,c2,c3).
+     */
+    private static final int[] PAIR_A = { 0 , 1 , 1 , 2 , 2 , 2 , 0 , 1 , 2 };
+    
+    /**
+     * Column index b of the pairs (a,b) that correspond to each of the 9 coefficients (K11,K21,K22,K31,K32,K33,c1,c2,c3).
+     */
+    private static final int[] PAIR_B = { 0 , 0 , 1 , 0 , 1 , 2 , 3 , 3 , 3 };
+    
+    /**
+     * Name reported to the {@link Instrumentation}.
+     */
+    private static final String NAME = "Bernal2019TriaxialCalibrator";
 
     
     
@@ -25,21 +74,27 @@ public class Bernal2019TriaxialCalibrator
     ////////////////////////////////////////////////////////////////
     // order of the polynomial used for the temperature dependence
     private int N;
-    private int maxN21;  // 2*N+1
-    private int maxN41;  // 4*N+1
-    // sum of weights
-    private double W;
-    // tensors built with measurements (their size depend on N)
-    private double[][][][][] X4;  // \sum_m w_m x_{m i} x_{m j} x_{m k} x_{m l} T_m^n (Nx4x4x4x4)
-    private double[][][] Y2;  // \sum_m w_m x_{m i} x_{m j} y_m^2 T_m^n (Nx4x4)
-    // auxiliary tensors used to build the previous ones
-    private double[] x1;
-    private double[][] x2;
-    private double[][][] x3;
-    private double[][][][] x4;
-    private double[] y1;
-    private double[][] y2;
-    private double[] Tn;
+    // moment tensors built with measurements (their size depend on N)
+    private Bernal2019MomentAccumulator moments;
+    // forgetting factor applied to the moment tensors
+    private double forgettingFactor = 1.0;
+    // true if z holds a solution that can be used to warm-start the solver
+    private boolean calibrated;
+    // pool used to assemble the normal equations in parallel (null to assemble them serially)
+    private ForkJoinPool assemblyPool;
+    // steps of the assembly, created once so that the solver does not allocate them in each iteration
+    private final IntConsumer updateD = this::update_D;
+    private final IntConsumer updateP = this::update_P;
+    private final IntConsumer updateH = this::update_H;
+    // convergence criteria of the solver
+    private double stepRelativeTolerance = DEFAULT_STEP_RELATIVE_TOLERANCE;
+    private double stepAbsoluteTolerance = DEFAULT_STEP_ABSOLUTE_TOLERANCE;
+    private double gradientRelativeTolerance = DEFAULT_GRADIENT_RELATIVE_TOLERANCE;
+    private double gradientAbsoluteTolerance = DEFAULT_GRADIENT_ABSOLUTE_TOLERANCE;
+    // statistics of the last run of the solver
+    private int iterations;
+    private double cost;
+    private boolean converged;
     // current approximation to the solution
     private double[] zk;  // z_k = ( (K11,K21,K22,K31,K32,K33,c1,c2,c3)^(0) ,
                           // (K11,K21,K22,K31,K32,K33,c1,c2,c3)^(1) , ... ,
@@ -50,6 +105,19 @@ public class Bernal2019TriaxialCalibrator
                          // (K11,K21,K22,K31,K32,K33,c1,c2,c3)^(N) )_optimal (9*Nx1)
     // coefficients of the polynomial matrix A: A^(n)
     private double[][][] A;
+    // number of unknowns: 9*(N+1)
+    private int M;
+    // workspaces of the solver, allocated once per polynomial order
+    private double[] JTWJ;  // J^T*W*J stored by rows (MxM)
+    private double[] JTWdy;  // J^T*W*dy (Mx1)
+    private double[] AA;  // contraction of A with itself ((2N+1)x4x4)
+    private double[] D;  // Y2 minus the contraction of X4 with AA ((2N+1)x4x4)
+    private double[] P;  // contraction of A with X4 ((3N+1)x9x4x4)
+    private double[] H;  // distinct blocks of J^T*W*J ((2N+1)x9x9)
+    private double[] S;  // damped J^T*W*J, overwritten by its Cholesky decomposition (MxM)
+    private double[] g;  // J^T*W*dy at zk (Mx1)
+    private double[] h;  // step of the solver (Mx1)
+    private double[] zPrev;  // zk before the step, restored if the step is rejected (Mx1)
     
     
     
@@ -61,6 +129,8 @@ public class Bernal2019TriaxialCalibrator
     {
         Bernal2019TriaxialCalibration output = new Bernal2019TriaxialCalibration();
         output.set( this.z );
+        if( this.moments.getTemperatureMin() <= this.moments.getTemperatureMax() )
+            output.setTemperatureRange( this.moments.getTemperatureMin() , this.moments.getTemperatureMax() );
         return output;
     }
 
@@ -68,69 +138,202 @@ public class Bernal2019TriaxialCalibrator
     public void setPolynomialOrder( int polynomialOrder )
     {
         this.N = polynomialOrder;
-        this.maxN21 = 2 * polynomialOrder + 1;
-        this.maxN41 = 4 * polynomialOrder + 1;
         // calibration tensors
-        this.X4 = new double[this.maxN41][4][4][4][4];
-        this.Y2 = new double[this.maxN21][4][4];
-        // auxiliary tensors
-        this.x1 = new double[4];
-        this.x1[3] = 1.0;
-        this.x2 = new double[4][4];
-        this.x3 = new double[4][4][4];
-        this.x4 = new double[4][4][4][4];
-        this.y1 = new double[4];
-        this.y2 = new double[4][4];
-        this.Tn = new double[this.maxN41];
+        this.moments = new Bernal2019MomentAccumulator( polynomialOrder );
+        this.moments.setForgettingFactor( this.forgettingFactor );
         // algorithm variables
         this.zk = new double[9 * ( polynomialOrder + 1 )];
         this.z = new double[9 * ( polynomialOrder + 1 )];
         this.A = new double[polynomialOrder + 1][3][4];
-        // now we reset
-        this.reset_tensors();
+        this.M = 9 * ( polynomialOrder + 1 );
+        this.JTWJ = new double[this.M * this.M];
+        this.JTWdy = new double[this.M];
+        this.AA = new double[( 2 * polynomialOrder + 1 ) * 16];
+        this.D = new double[( 2 * polynomialOrder + 1 ) * 16];
+        this.P = new double[( 3 * polynomialOrder + 1 ) * 9 * 16];
+        this.H = new double[( 2 * polynomialOrder + 1 ) * 81];
+        this.S = new double[this.M * this.M];
+        this.g = new double[this.M];
+        this.h = new double[this.M];
+        this.zPrev = new double[this.M];
+        this.calibrated = false;
+    }
+
+
+    /**
+     * Sets the pool used to assemble the normal equations of the solver in parallel.
+     * <p>
+     * The parallel assembly computes exactly the same operations as the serial one, so results are identical.
+     * It is only used for polynomial orders of {@value #MIN_POLYNOMIAL_ORDER_FOR_PARALLEL_ASSEMBLY} or more;
+     * lower orders are assembled serially to avoid the scheduling overhead.
+     * 
+     * @param pool  pool used to assemble the normal equations; null (the default) to assemble them serially.
+     */
+    public void setAssemblyPool( ForkJoinPool pool )
+    {
+        this.assemblyPool = pool;
+    }
+
+
+    /**
+     * Sets the tolerances on the step of the solver.
+     * <p>
+     * The solver stops when the norm of the step is below absolute + relative * |z|.
+     * 
+     * @param relative  tolerance relative to the norm of the solution (1e-10 by default).
+     * @param absolute  absolute tolerance (1e-12 by default).
+     */
+    public void setStepTolerance( double relative , double absolute )
+    {
+        if( !( relative >= 0.0  &&  absolute >= 0.0 ) ) {
+            throw new IllegalArgumentException( "Bernal2019TriaxialCalibrator: tolerances must be non-negative." );
+        }
+        this.stepRelativeTolerance = relative;
+        this.stepAbsoluteTolerance = absolute;
+    }
+
+
+    /**
+     * Sets the tolerances on the gradient of the cost function.
+     * <p>
+     * The solver stops when the largest component of the gradient is below absolute + relative * (largest component of the initial gradient).
+     * 
+     * @param relative  tolerance relative to the initial gradient (1e-12 by default).
+     * @param absolute  absolute tolerance (1e-15 by default).
+     */
+    public void setGradientTolerance( double relative , double absolute )
+    {
+        if( !( relative >= 0.0  &&  absolute >= 0.0 ) ) {
+            throw new IllegalArgumentException( "Bernal2019TriaxialCalibrator: tolerances must be non-negative." );
+        }
+        this.gradientRelativeTolerance = relative;
+        this.gradientAbsoluteTolerance = absolute;
+    }
+
+
+    /**
+     * Sets the forgetting factor used to decay the contribution of old measurements in online mode.
+     * 
+     * @param forgettingFactor  forgetting factor in (0,1]. A value of 1 (the default) does not forget.
+     * @see Bernal2019MomentAccumulator#setForgettingFactor(double)
+     * @see #recalibrate(int)
+     */
+    public void setForgettingFactor( double forgettingFactor )
+    {
+        if( this.moments != null )
+            this.moments.setForgettingFactor( forgettingFactor );
+        this.forgettingFactor = forgettingFactor;
     }
 
 
     // updates the tensors with a data combination
     public void addCalibrationData( double w , double x1 , double x2 , double x3 , double T , double y )
     {
-        this.x1[0] = x1;
-        this.x1[1] = x2;
-        this.x1[2] = x3;
-        // we define the auxiliary factor for this measurement
-        double alpha = w / ( this.W + w );
-        // and we add the contribution to the sum of weights
-        this.W += w;
-        // we define the square of the module
-        double y0 = y * y;
-        // now we add the contribution of this measurement to the tensors
-        // zeroth-order tensors
-        this.Tn[0] = 1.0;
-        for( int n = 1; n < this.maxN41; n++ )
-            this.Tn[n] = this.Tn[n - 1] * T;
-        // first-order tensors
-        for( int i = 0; i < 4; i++ ) {
-            this.y1[i] = y0 * this.x1[i];
-            // second-order tensors
-            for( int j = 0; j < 4; j++ ) {
-                this.x2[i][j] = this.x1[i] * this.x1[j];
-                this.y2[i][j] = this.y1[i] * this.x1[j];
-                for( int n = 0; n < this.maxN21; n++ )
-                    this.Y2[n][i][j] = ( 1.0 - alpha ) * this.Y2[n][i][j] + alpha * this.y2[i][j] * this.Tn[n];
-                // third-order tensor
-                for( int k = 0; k < 4; k++ ) {
-                    this.x3[i][j][k] = this.x2[i][j] * this.x1[k];
-                    // fourth-order tensor
-                    for( int l = 0; l < 4; l++ ) {
-                        this.x4[i][j][k][l] = this.x3[i][j][k] * this.x1[l];
-                        for( int n = 0; n < this.maxN41; n++ )
-                            this.X4[n][i][j][k][l] = ( 1.0 - alpha ) * this.X4[n][i][j][k][l]
-                                    + alpha * this.x4[i][j][k][l] * this.Tn[n];
-                    }  // end l
-                }  // end k
-            }  // end j
-        }  // end i
-    }  // end include_measurementCalibration( double w , double[] x , double y , double T )
+        this.moments.add( w , x1 , x2 , x3 , T , y );
+    }
+
+
+    /**
+     * Updates the tensors with a block of measurements stored in primitive arrays.
+     * 
+     * @see Bernal2019MomentAccumulator#add(double[], double[], double[], double[], int, int)
+     */
+    public void addCalibrationData( double[] xyz , double[] T , double[] y , double[] w , int offset , int count )
+    {
+        Measurement measurement = Instrumentation.beginIngest();
+        this.moments.add( xyz , T , y , w , offset , count );
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+
+
+    /**
+     * Updates the tensors with a block of measurements read from buffers.
+     * 
+     * @see Bernal2019MomentAccumulator#add(DoubleBuffer, DoubleBuffer, DoubleBuffer, DoubleBuffer, int)
+     */
+    public void addCalibrationData( DoubleBuffer xyz , DoubleBuffer T , DoubleBuffer y , DoubleBuffer w , int count )
+    {
+        Measurement measurement = Instrumentation.beginIngest();
+        this.moments.add( xyz , T , y , w , count );
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+
+
+    /**
+     * Updates the tensors with moment tensors accumulated elsewhere (for example, in another thread).
+     * <p>
+     * The forgetting factor is not applied by the merge: the tensors of this calibrator are not decayed,
+     * and the merged measurements keep the weights with which they were accumulated.
+     * To forget as if the measurements had been added to this calibrator, use {@link #addCalibrationData(double[], double[], double[], double[], int, int)} instead.
+     * 
+     * @param otherMoments  moment tensors built with the same polynomial order as this calibrator.
+     * @see Bernal2019MomentAccumulator#merge(Bernal2019MomentAccumulator)
+     */
+    public void addCalibrationData( Bernal2019MomentAccumulator otherMoments )
+    {
+        this.moments.merge( otherMoments );
+    }
+
+
+    /**
+     * Updates the tensors with the weighted mean of each occupied bin of a {@link Bernal2019SphericalBinning}.
+     * <p>
+     * Each bin is added as a single measurement, weighted as given by {@link Bernal2019SphericalBinning#setWeighting(Bernal2019SphericalBinning.BinWeighting)},
+     * so the cost depends on the number of bins instead of the number of binned measurements. The bins are not modified.
+     * 
+     * @param bins  binned calibration data.
+     */
+    public void addCalibrationData( Bernal2019SphericalBinning bins )
+    {
+        Measurement measurement = Instrumentation.beginIngest();
+        int count = bins.addTo( this.moments );
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+
+
+    /**
+     * Updates the tensors with a block of measurements stored in primitive arrays, using the threads of the common {@link ForkJoinPool}.
+     * <p>
+     * The block is split into shards that are accumulated concurrently in independent {@link Bernal2019MomentAccumulator}s,
+     * which are then merged into the tensors of this calibrator.
+     * The tensors of this calibrator are decayed by the forgetting factor as in the serial method, so both give the same tensors.
+     * 
+     * @see Bernal2019MomentAccumulator#add(double[], double[], double[], double[], int, int)
+     */
+    public void addCalibrationDataParallel( double[] xyz , double[] T , double[] y , double[] w , int offset , int count )
+    {
+        int shards = Math.max( 1 , Math.min( 4 * ForkJoinPool.getCommonPoolParallelism() , count / MIN_MEASUREMENTS_PER_SHARD ) );
+        if( shards == 1 ) {
+            this.addCalibrationData( xyz , T , y , w , offset , count );
+            return;
+        }
+        Measurement measurement = Instrumentation.beginIngest();
+        Bernal2019MomentAccumulator blockMoments = IntStream.range( 0 , shards ).parallel()
+                .mapToObj( s -> {
+                    int from = offset + (int)( (long)count * s / shards );
+                    int to = offset + (int)( (long)count * ( s + 1 ) / shards );
+                    Bernal2019MomentAccumulator shardMoments = new Bernal2019MomentAccumulator( this.N );
+                    shardMoments.add( xyz , T , y , w , from , to - from );
+                    return shardMoments;
+                } )
+                .reduce( Bernal2019MomentAccumulator::merge )
+                .get();
+        // the block is weighted as its last measurement, as in Bernal2019MomentAccumulator.add()
+        this.moments.decay( count );
+        this.moments.merge( blockMoments );
+        Instrumentation.endIngest( measurement , NAME , count );
+    }
+
+
+    /**
+     * Returns the moment tensors accumulated by this calibrator.
+     * 
+     * @return  moment tensors accumulated by this calibrator.
+     */
+    public Bernal2019MomentAccumulator getMoments()
+    {
+        return this.moments;
+    }
 
 
     // computes the temperature calibration of theN order. First we need to set the
@@ -139,51 +342,326 @@ public class Bernal2019TriaxialCalibrator
     {
         // we compute the solution using the Levenberg–Marquardt algorithm
         this.reset_zk();
-        double minError = Double.MAX_VALUE;
+        this.iterate( MAX_CALIBRATION_ITERATIONS );
+    }  // end compute_calibration()
+
+
+    /**
+     * Updates the calibration in online mode.
+     * <p>
+     * The solver is warm-started from the previous solution instead of the identity,
+     * and runs at most the given number of iterations, so that the latency of each update is bounded.
+     * Combined with {@link #setForgettingFactor(double)}, this allows to track a calibration continuously on a live stream of measurements.
+     * If there is no previous solution, the solver starts from the identity as in {@link #calibrate()}.
+     * 
+     * @param maxIterations     maximum number of iterations of the solver.
+     */
+    public void recalibrate( int maxIterations )
+    {
+        if( this.calibrated ) {
+            System.arraycopy( this.z , 0 , this.zk , 0 , this.zk.length );
+        } else {
+            this.reset_zk();
+        }
+        this.iterate( maxIterations );
+    }
+
+
+    /**
+     * Returns the number of iterations of the last run of the solver.
+     * 
+     * @return  number of iterations of the last run of the solver.
+     */
+    public int getIterations()
+    {
+        return this.iterations;
+    }
+
+
+    /**
+     * Returns the residual of the last solution: the weighted root mean square of y^2 - |x_calibrated|^2 over the calibration data.
+     * 
+     * @return  residual of the last solution.
+     */
+    public double getResidual()
+    {
+        return Math.sqrt( Math.max( this.cost , 0.0 ) );
+    }
+
+
+    /**
+     * Returns true if the last run of the solver met the convergence criteria before reaching the maximum number of iterations.
+     * 
+     * @return  true if the last run of the solver converged.
+     */
+    public boolean hasConverged()
+    {
+        return this.converged;
+    }
+
+
+    /**
+     * Evaluates the fit of a calibration over the accumulated calibration data, without a pass over the data.
+     * <p>
+     * The weighted residuals y^2 - |x_calibrated|^2 are polynomials in the moments of the data,
+     * so their statistics are computed in closed form from the moment tensors, in a time that only depends on the polynomial order.
+     * This allows to compare candidate calibrations, such as a new calibration and the deployed one, cheaply.
+     * <p>
+     * A {@link Bernal2019TriaxialCalibration} is evaluated with its temperature polynomial, without clamping the temperatures to its range;
+     * other calibrations are assumed to be affine and independent of the temperature, and are probed with {@link TriaxialCalibration#correct(double[], double[])}.
+     * The residual of {@link #getCalibration()} equals {@link #getResidual()}.
+     * 
+     * @param calibration   calibration to be evaluated.
+     * @return  statistics of the residuals of the calibration.
+     * @throws IllegalArgumentException     if the polynomial order of the calibration is larger than that of this calibrator.
+     * @throws IllegalStateException    if there is no calibration data.
+     */
+    public Bernal2019Evaluation evaluate( TriaxialCalibration calibration )
+    {
+        if( !( this.moments.getWeight() > 0.0 ) ) {
+            throw new IllegalStateException( "Bernal2019TriaxialCalibrator: there is no calibration data." );
+        }
+        double[][][] A = this.affineCoefficients( calibration );
+        int Nc = A.length - 1;
+        if( Nc > this.N ) {
+            throw new IllegalArgumentException( "Bernal2019TriaxialCalibrator: the polynomial order of the calibration (" + Nc + ") is larger than that of the calibrator (" + this.N + ")." );
+        }
+        // contraction of A with itself, as in update_AA()
+        double[] AA = new double[( 2 * Nc + 1 ) * 16];
+        for( int n = 0; n <= Nc; n++ ) {
+            for( int l = 0; l <= Nc; l++ ) {
+                int p16 = 16 * ( n + l );
+                for( int i = 0; i < 3; i++ ) {
+                    for( int j = 0; j < 4; j++ ) {
+                        for( int k = 0; k < 4; k++ ) {
+                            AA[p16 + 4 * j + k] += A[n][i][j] * A[l][i][k];
+                        }  // k
+                    }  // j
+                }  // i
+            }  // l
+        }  // n
+        // the mean of y^2 - |A x|^2 is Y2[0][3][3] - \sum AA[q][j][k] X4[q][j][k][3][3] (since x_3 = 1),
+        // and its mean square is Y4 - 2 \sum AA[q][j][k] Y2[q][j][k] + \sum AA[p][j1][k1] AA[q][j2][k2] X4[p+q][j1][k1][j2][k2]
+        double mean = this.moments.Y2( 0 , 3 , 3 );
+        double meanSquare = this.moments.Y4();
+        for( int q = 0; q <= 2 * Nc; q++ ) {
+            int q16 = 16 * q;
+            for( int j2 = 0; j2 < 4; j2++ ) {
+                for( int k2 = 0; k2 < 4; k2++ ) {
+                    double AAq = AA[q16 + 4 * j2 + k2];
+                    if( AAq == 0.0 )
+                        continue;
+                    mean -= AAq * this.moments.X4( q , j2 , k2 , 3 , 3 );
+                    double sum = -2.0 * this.moments.Y2( q , j2 , k2 );
+                    for( int p = 0; p <= 2 * Nc; p++ ) {
+                        int p16 = 16 * p;
+                        for( int j1 = 0; j1 < 4; j1++ ) {
+                            for( int k1 = 0; k1 < 4; k1++ ) {
+                                sum += AA[p16 + 4 * j1 + k1] * this.moments.X4( p + q , j1 , k1 , j2 , k2 );
+                            }  // k1
+                        }  // j1
+                    }  // p
+                    meanSquare += AAq * sum;
+                }  // k2
+            }  // j2
+        }  // q
+        double residual = Math.sqrt( Math.max( meanSquare , 0.0 ) );
+        double standardDeviation = Math.sqrt( Math.max( meanSquare - mean * mean , 0.0 ) );
+        double y4 = this.moments.Y4();
+        double relativeResidual = ( y4 > 0.0 ) ? residual / Math.sqrt( y4 ) : Double.NaN;
+        return new Bernal2019Evaluation( residual , mean , standardDeviation , relativeResidual , this.moments.getWeight() );
+    }
+
+
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    // iterates the Levenberg–Marquardt algorithm starting from zk
+    // the damping mu is adapted with the gain ratio between the actual and the predicted reduction of the cost
+    private void iterate( int maxIterations )
+    {
+        Measurement measurement = Instrumentation.beginSolve();
+        boolean instrumentIterations = Instrumentation.iterationsEnabled();
+        int M = this.M;
+        double[] zk = this.zk;
+        double[] g = this.g;
+        double[] h = this.h;
+        double[] S = this.S;
+        double[] JTWJ = this.JTWJ;
+        // cost, gradient and J^T*W*J at the starting point
+        this.update_A();
+        this.update_JTWdy();
+        double F = this.cost();
+        System.arraycopy( this.JTWdy , 0 , g , 0 , M );
+        this.update_JTWJ();
+        double maxDiagonal = 0.0;
+        for( int i = 0; i < M; i++ )
+            maxDiagonal = Math.max( maxDiagonal , JTWJ[i * M + i] );
+        double mu = INITIAL_DAMPING_FACTOR * maxDiagonal;
+        double nu = 2.0;
+        double gradientTolerance = this.gradientAbsoluteTolerance + this.gradientRelativeTolerance * this.normInf( g );
+        this.converged = false;
         int itWithoutImprovement = 0;
-        for( int k = 0; k < MAX_CALIBRATION_ITERATIONS; k++ ) {
-            // first of all we update the calibration matrix
-            this.update_A();
-            // we compute the vector J^T*W*dy
-            double[] JTWdy = this.get_JTWdy();
-            // we compute the J^T*W*J matrix
-            double[][] JTWJ = this.get_JTWJ();
-            // we compute the next delta in the solution approximation ( delta^T*(J^T*J) = [J^T*(y-f)]^T )
-            this.solve( JTWJ , JTWdy , JTWJ.length );  // now dz is stored in JTWdy
-            // we compute the current error in the search for the zeros
-            double err = 0.0;
-            for( int i = 0; i < 9 * ( this.N + 1 ); i++ ) {
-                err += JTWdy[i] * JTWdy[i];
+        int k = 0;
+        while( k < maxIterations ) {
+            // we stop if the gradient vanishes
+            if( this.normInf( g ) <= gradientTolerance ) {
+                this.converged = true;
+                break;
+            }
+            k++;
+            // we compute the damped step ( (J^T*W*J + mu*I)*h = J^T*W*dy )
+            for( int i = 0; i < M; i++ ) {
+                int iM = i * M;
+                for( int j = 0; j <= i; j++ )
+                    S[iM + j] = JTWJ[iM + j];
+                S[iM + i] += mu;
+            }
+            System.arraycopy( g , 0 , h , 0 , M );
+            if( !this.solve( S , h , M ) ) {
+                // the damped matrix is not positive definite; we increase the damping
+                if( instrumentIterations )
+                    Instrumentation.iteration( NAME , k , Math.sqrt( Math.max( F , 0.0 ) ) , mu , false );
+                mu *= nu;
+                nu *= 2.0;
+                itWithoutImprovement++;
+                if( itWithoutImprovement > MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT )
+                    break;
+                continue;
             }
-            if( err < minError ) {
-                for( int i = 0; i < 9 * ( this.N + 1 ); i++ )
-                    this.z[i] = this.zk[i];
-                minError = err;
+            // we stop if the step is negligible
+            double hNorm2 = 0.0;
+            double zNorm2 = 0.0;
+            double hg = 0.0;
+            for( int i = 0; i < M; i++ ) {
+                hNorm2 += h[i] * h[i];
+                zNorm2 += zk[i] * zk[i];
+                hg += h[i] * g[i];
+            }
+            if( Math.sqrt( hNorm2 ) <= this.stepAbsoluteTolerance + this.stepRelativeTolerance * Math.sqrt( zNorm2 ) ) {
+                this.converged = true;
+                break;
+            }
+            // we evaluate the cost at the new point
+            System.arraycopy( zk , 0 , this.zPrev , 0 , M );
+            for( int i = 0; i < M; i++ )
+                zk[i] += h[i];
+            this.update_A();
+            this.update_JTWdy();
+            double Fnew = this.cost();
+            // the reduction predicted by the linearized model is 2*h^T*g - h^T*(J^T*W*J)*h = h^T*g + mu*h^T*h
+            double rho = ( F - Fnew ) / ( hg + mu * hNorm2 );
+            if( instrumentIterations )
+                Instrumentation.iteration( NAME , k , Math.sqrt( Math.max( rho > 0.0 ? Fnew : F , 0.0 ) ) , mu , rho > 0.0 );
+            if( rho > 0.0 ) {
+                // the step is accepted, and the damping reduced
+                F = Fnew;
+                System.arraycopy( this.JTWdy , 0 , g , 0 , M );
+                this.update_JTWJ();
+                double r = 2.0 * rho - 1.0;
+                mu *= Math.max( 1.0 / 3.0 , 1.0 - r * r * r );
+                nu = 2.0;
                 itWithoutImprovement = 0;
             } else {
+                // the step is rejected, and the damping increased
+                System.arraycopy( this.zPrev , 0 , zk , 0 , M );
+                mu *= nu;
+                nu *= 2.0;
                 itWithoutImprovement++;
                 if( itWithoutImprovement > MAX_CALIBRATION_ITERATIONS_WITHOUT_IMPROVEMENT )
                     break;
             }
-            // we update the solution
-            for( int i = 0; i < 9 * ( this.N + 1 ); i++ )
-                this.zk[i] += JTWdy[i];
-            // and now we correct for a right-handed orientation
-            if( this.zk[0] < 0.0 )
-                this.zk[0] = -this.zk[0];
-            if( this.zk[2] < 0.0 )
-                this.zk[2] = -this.zk[2];
-            if( this.zk[5] < 0.0 )
-                this.zk[5] = -this.zk[5];
         }  // end iterations
-    }  // end compute_calibration()
+        // and now we correct for a right-handed orientation
+        // (changing the sign of a whole row of A does not change the cost)
+        this.flipRow( 0 , 0 );
+        this.flipRow( 1 , 2 );
+        this.flipRow( 2 , 5 );
+        System.arraycopy( zk , 0 , this.z , 0 , M );
+        this.iterations = k;
+        this.cost = F;
+        this.calibrated = true;
+        Instrumentation.endSolve( measurement , NAME , k , this.getResidual() , this.converged , !this.converged && k == maxIterations );
+    }
+
+
+    // returns the matrices A^(n) ((N+1)x3x4) of a calibration, such that x_calibrated = \sum_n T^n A^(n) (x1,x2,x3,1)
+    private double[][][] affineCoefficients( TriaxialCalibration calibration )
+    {
+        if( calibration instanceof Bernal2019TriaxialCalibration ) {
+            double[] coefficients = ( (Bernal2019TriaxialCalibration)calibration ).getCoefficients();
+            double[][][] A = new double[coefficients.length / 9][3][4];
+            for( int n = 0; n < A.length; n++ ) {
+                int n9 = 9 * n;
+                for( int p = 0; p < 9; p++ )
+                    A[n][PAIR_A[p]][PAIR_B[p]] = coefficients[n9 + p];
+            }
+            return A;
+        }
+        // we probe the calibration with the origin and the unit vectors
+        double[][][] A = new double[1][3][4];
+        double[] input = new double[3];
+        double[] output = new double[3];
+        calibration.correct( input , output );
+        for( int i = 0; i < 3; i++ )
+            A[0][i][3] = output[i];
+        for( int j = 0; j < 3; j++ ) {
+            input[j] = 1.0;
+            calibration.correct( input , output );
+            input[j] = 0.0;
+            for( int i = 0; i < 3; i++ )
+                A[0][i][j] = output[i] - A[0][i][3];
+        }
+        return A;
+    }
+
+
+    // changes the sign of the row a of every A^(n) if its diagonal element in A^(0), zk[diagonal], is negative
+    private void flipRow( int a , int diagonal )
+    {
+        if( this.zk[diagonal] >= 0.0 )
+            return;
+        for( int n = 0; n <= this.N; n++ ) {
+            int n9 = 9 * n;
+            for( int p = 0; p < 9; p++ ) {
+                if( PAIR_A[p] == a )
+                    this.zk[n9 + p] = -this.zk[n9 + p];
+            }
+        }
+    }
+
+
+    // computes the cost \sum_m w_m ( y_m^2 - |A x_m|^2 )^2 / W at the point in which AA and D were last updated:
+    // Y4 - 2 \sum Y2*AA + \sum X4*AA*AA = Y4 - \sum AA*( Y2 + D )
+    private double cost()
+    {
+        double[] AA = this.AA;
+        double[] D = this.D;
+        double sum = this.moments.Y4();
+        for( int q = 0; q <= 2 * this.N; q++ ) {
+            int q16 = 16 * q;
+            for( int j = 0; j < 4; j++ ) {
+                for( int k = 0; k < 4; k++ ) {
+                    sum -= AA[q16 + 4 * j + k] * ( this.moments.Y2( q , j , k ) + D[q16 + 4 * j + k] );
+                }  // k
+            }  // j
+        }  // q
+        return sum;
+    }
+
+
+    // returns the largest absolute value of the components of v
+    private double normInf( double[] v )
+    {
+        double max = 0.0;
+        for( int i = 0; i < v.length; i++ )
+            max = Math.max( max , Math.abs( v[i] ) );
+        return max;
+    }
 
 
-    
-    ////////////////////////////////////////////////////////////////
-    // PRIVATE METHODS
-    ////////////////////////////////////////////////////////////////
-    
     // resets the current approximation to the solution
     private void reset_zk()
     {
@@ -202,26 +680,6 @@ public class Bernal2019TriaxialCalibrator
     }
 
 
-    // resets the tensors
-    private void reset_tensors()
-    {
-        this.W = 0.0;
-        // first we reset the tensors
-        for( int i = 0; i < 4; i++ ) {
-            for( int j = 0; j < 4; j++ ) {
-                for( int n = 0; n < this.maxN21; n++ )
-                    this.Y2[n][i][j] = 0.0;
-                for( int k = 0; k < 4; k++ ) {
-                    for( int l = 0; l < 4; l++ ) {
-                        for( int n = 0; n < this.maxN41; n++ )
-                            this.X4[n][i][j][k][l] = 0.0;
-                    }
-                }
-            }
-        }
-    }
-
-
     // updates the matrix A with the current approximation to the solution
     private void update_A()
     {
@@ -243,196 +701,273 @@ public class Bernal2019TriaxialCalibrator
     }
 
 
-    // gets a term of the matrix J^T*W*( y^2 - f )
-    private double get_JTWdy( int g , int a , int b )
+    // updates the contraction of A with itself used by the normal equations:
+    // AA[p][j1][k] = \sum_{n+l=p} \sum_i A^(n)_{i j1} A^(l)_{i k}
+    private void update_AA()
     {
-        double sum = 0.0;
-        for( int n2 = 0; n2 <= this.N; n2++ ) {
-            int nY = n2 + g;
-            for( int j2 = 0; j2 < 4; j2++ ) {
-                sum += this.A[n2][a][j2] * this.Y2[nY][j2][b];
-            }
-            for( int n = 0; n <= this.N; n++ ) {
-                for( int l = 0; l <= this.N; l++ ) {
-                    int nX = nY + n + l;
-                    for( int i = 0; i < 3; i++ ) {
-                        for( int j1 = 0; j1 < 4; j1++ ) {
-                            for( int k = 0; k < 4; k++ ) {
-                                for( int j2 = 0; j2 < 4; j2++ ) {
-                                    sum -= this.A[n2][a][j2] * this.A[n][i][j1] * this.A[l][i][k]
-                                            * this.X4[nX][j2][b][j1][k];
-                                }  // j2
-                            }  // k
-                        }  // j
-                    }  // i
-                }  // l
-            }  // n
-        }  // n2
-        return 2.0 * sum;
+        double[] AA = this.AA;
+        for( int i = 0; i < AA.length; i++ )
+            AA[i] = 0.0;
+        for( int n = 0; n <= this.N; n++ ) {
+            for( int l = 0; l <= this.N; l++ ) {
+                int p16 = 16 * ( n + l );
+                for( int i = 0; i < 3; i++ ) {
+                    for( int j1 = 0; j1 < 4; j1++ ) {
+                        double Anij1 = this.A[n][i][j1];
+                        for( int k = 0; k < 4; k++ ) {
+                            AA[p16 + 4 * j1 + k] += Anij1 * this.A[l][i][k];
+                        }  // k
+                    }  // j1
+                }  // i
+            }  // l
+        }  // n
     }
 
 
-    // gets the matrix J^T*W*( y^2 - f )
-    private double[] get_JTWdy()
+    // updates the matrix J^T*W*( y^2 - f )
+    // each term is 2 \sum_{n2} \sum_{j2} A^(n2)_{a j2} D[n2+g][j2][b], with
+    // D[q][j2][b] = Y2[q][j2][b] - \sum_p \sum_{j1,k} X4[q+p][j2][b][j1][k] AA[p][j1][k]
+    private void update_JTWdy()
     {
+        this.update_AA();
+        // first we compute D
+        this.forEach( 2 * this.N + 1 , this.updateD );
         // now we compute the matrix J^T*W*dy
-        double[] JTWdy = new double[9 * ( this.N + 1 )];
+        double[] D = this.D;
+        double[] JTWdy = this.JTWdy;
         int iJ = 0;
         for( int g = 0; g <= this.N; g++ ) {
-            // K part
-            for( int a = 0; a < 3; a++ ) {
-                for( int b = 0; b <= a; b++ ) {
-                    JTWdy[iJ++] = this.get_JTWdy( g , a , b );
-                }  // end b
-            }  // end a
-               // c part
-            for( int a = 0; a < 3; a++ ) {
-                JTWdy[iJ++] = this.get_JTWdy( g , a , 3 );
-            }  // end a
-        }  // end g
-        return JTWdy;
-    }  // get_JTWdy()
-
-
-    // gets a term of the matrix J^T*W*J
-    private double get_JTWJ( int g1 , int a1 , int b1 , int g2 , int a2 , int b2 )
-    {
-        double sum = 0.0;
-        for( int n1 = 0; n1 <= this.N; n1++ ) {
-            for( int n2 = 0; n2 <= this.N; n2++ ) {
-                int nX = n1 + g1 + n2 + g2;
-                for( int j1 = 0; j1 < 4; j1++ ) {
+            for( int p1 = 0; p1 < 9; p1++ ) {
+                int a = PAIR_A[p1];
+                int b = PAIR_B[p1];
+                double sum = 0.0;
+                for( int n2 = 0; n2 <= this.N; n2++ ) {
+                    int q16 = 16 * ( n2 + g );
                     for( int j2 = 0; j2 < 4; j2++ ) {
-                        sum += this.A[n1][a1][j1] * this.A[n2][a2][j2] * this.X4[nX][j1][b1][j2][b2];
+                        sum += this.A[n2][a][j2] * D[q16 + 4 * j2 + b];
                     }  // j2
-                }  // j
-            }  // n2
-        }  // n
-        return 4.0 * sum;
+                }  // n2
+                JTWdy[iJ++] = 2.0 * sum;
+            }  // p1
+        }  // g
+    }  // update_JTWdy()
+
+
+    // updates D[q], which is symmetric in (j2,b)
+    private void update_D( int q )
+    {
+        double[] AA = this.AA;
+        double[] D = this.D;
+        int q16 = 16 * q;
+        for( int j2 = 0; j2 < 4; j2++ ) {
+            for( int b = j2; b < 4; b++ ) {
+                double sum = this.moments.Y2( q , j2 , b );
+                for( int p = 0; p <= 2 * this.N; p++ ) {
+                    int p16 = 16 * p;
+                    for( int j1 = 0; j1 < 4; j1++ ) {
+                        for( int k = 0; k < 4; k++ ) {
+                            sum -= this.moments.X4( q + p , j2 , b , j1 , k ) * AA[p16 + 4 * j1 + k];
+                        }  // k
+                    }  // j1
+                }  // p
+                D[q16 + 4 * j2 + b] = sum;
+                D[q16 + 4 * b + j2] = sum;
+            }  // b
+        }  // j2
     }
 
 
-    // gets the matrix J^T*W*J
-    private double[][] get_JTWJ()
+    // updates the matrix J^T*W*J
+    // the term ( (g1,a1,b1) , (g2,a2,b2) ) only depends on g1+g2, so we compute
+    // H[r][p1][p2] = 4 \sum_{n2} \sum_{j2} A^(n2)_{a2 j2} P[n2+r][p1][j2][b2], with
+    // P[s][p1][j2][b2] = \sum_{n1} \sum_{j1} A^(n1)_{a1 j1} X4[n1+s][j1][b1][j2][b2]
+    // where p1 and p2 index the pairs (a1,b1) and (a2,b2) as they are ordered in z
+    private void update_JTWJ()
     {
-        // now we compute the matrix J^T*W*J
-        double[][] JTWJ = new double[9 * ( this.N + 1 )][9 * ( this.N + 1 )];
-        int iJ1 = 0;
-        for( int g = 0; g <= this.N; g++ ) {
-            // K# part
-            for( int a = 0; a < 3; a++ ) {
-                for( int b = 0; b <= a; b++ ) {
-                    int iJ2 = 0;
-                    for( int g2 = 0; g2 <= this.N; g2++ ) {
-                        // K part
-                        for( int a2 = 0; a2 < 3; a2++ ) {
-                            for( int b2 = 0; b2 <= a2; b2++ ) {
-                                JTWJ[iJ1][iJ2] = this.get_JTWJ( g , a , b , g2 , a2 , b2 );
-                                iJ2++;
-                            }
-                        }
-                        // c part
-                        for( int a2 = 0; a2 < 3; a2++ ) {
-                            JTWJ[iJ1][iJ2] = this.get_JTWJ( g , a , b , g2 , a2 , 3 );
-                            iJ2++;
-                        }
-                    }
-                    iJ1++;
-                }
-            }
-            // c# part
-            for( int a = 0; a < 3; a++ ) {
-                int iJ2 = 0;
-                for( int g2 = 0; g2 <= this.N; g2++ ) {
-                    // K part
-                    for( int a2 = 0; a2 < 3; a2++ ) {
-                        for( int b2 = 0; b2 <= a2; b2++ ) {
-                            JTWJ[iJ1][iJ2] = this.get_JTWJ( g , a , 3 , g2 , a2 , b2 );
-                            iJ2++;
-                        }
-                    }
-                    // c part
-                    for( int a2 = 0; a2 < 3; a2++ ) {
-                        JTWJ[iJ1][iJ2] = this.get_JTWJ( g , a , 3 , g2 , a2 , 3 );
-                        iJ2++;
-                    }
-                }
-                iJ1++;
-            }
+        // first we compute P
+        this.forEach( 3 * this.N + 1 , this.updateP );
+        // then H
+        this.forEach( 2 * this.N + 1 , this.updateH );
+        // finally we fill the lower triangle of J^T*W*J, which is the only one read by Cholesky
+        double[] H = this.H;
+        double[] JTWJ = this.JTWJ;
+        int M = this.M;
+        for( int iJ1 = 0; iJ1 < M; iJ1++ ) {
+            int g1 = iJ1 / 9;
+            int p1 = iJ1 % 9;
+            for( int iJ2 = 0; iJ2 <= iJ1; iJ2++ ) {
+                int g2 = iJ2 / 9;
+                int p2 = iJ2 % 9;
+                JTWJ[iJ1 * M + iJ2] = H[81 * ( g1 + g2 ) + 9 * p1 + p2];
+            }  // iJ2
+        }  // iJ1
+    }  // end update_JTWJ()
+
+
+    // updates P[s]
+    private void update_P( int s )
+    {
+        double[] P = this.P;
+        for( int p1 = 0; p1 < 9; p1++ ) {
+            int a1 = PAIR_A[p1];
+            int b1 = PAIR_B[p1];
+            int sp16 = 16 * ( 9 * s + p1 );
+            for( int j2 = 0; j2 < 4; j2++ ) {
+                for( int b2 = 0; b2 < 4; b2++ ) {
+                    double sum = 0.0;
+                    for( int n1 = 0; n1 <= this.N; n1++ ) {
+                        for( int j1 = 0; j1 < 4; j1++ ) {
+                            sum += this.A[n1][a1][j1] * this.moments.X4( n1 + s , j1 , b1 , j2 , b2 );
+                        }  // j1
+                    }  // n1
+                    P[sp16 + 4 * j2 + b2] = sum;
+                }  // b2
+            }  // j2
+        }  // p1
+    }
+
+
+    // updates H[r], which is symmetric in (p1,p2)
+    private void update_H( int r )
+    {
+        double[] P = this.P;
+        double[] H = this.H;
+        int r81 = 81 * r;
+        for( int p1 = 0; p1 < 9; p1++ ) {
+            for( int p2 = 0; p2 <= p1; p2++ ) {
+                int a2 = PAIR_A[p2];
+                int b2 = PAIR_B[p2];
+                double sum = 0.0;
+                for( int n2 = 0; n2 <= this.N; n2++ ) {
+                    int sp16 = 16 * ( 9 * ( n2 + r ) + p1 );
+                    for( int j2 = 0; j2 < 4; j2++ ) {
+                        sum += this.A[n2][a2][j2] * P[sp16 + 4 * j2 + b2];
+                    }  // j2
+                }  // n2
+                H[r81 + 9 * p1 + p2] = 4.0 * sum;
+                H[r81 + 9 * p2 + p1] = 4.0 * sum;
+            }  // p2
+        }  // p1
+    }
+
+
+    // calls the action for each index in [0,n), in parallel if an assembly pool is set and the polynomial order is high enough
+    // each index writes to its own region of the workspaces, so the result does not depend on the scheduling
+    private void forEach( int n , IntConsumer action )
+    {
+        if( this.assemblyPool == null  ||  this.N < MIN_POLYNOMIAL_ORDER_FOR_PARALLEL_ASSEMBLY ) {
+            for( int i = 0; i < n; i++ )
+                action.accept( i );
+        } else {
+            this.assemblyPool.invoke( new RangeAction( 0 , n , action ) );
         }
-        return JTWJ;
-    }  // end get_JTWJ()
+    }
 
 
     // Method: Cholesky
-    // performs the Cholesky decomposition of a positive definite matrix ( S = L*L'
-    // )
+    // performs the Cholesky decomposition of a positive definite matrix ( S = L*L' )
     // inputs:
-    // S: NxN positive definite matrix to be decomposed (must be stored by columns)
+    // S: nxn positive definite matrix to be decomposed (stored by rows in a flat array)
     // outputs:
-    // S: the lower triangular matrix L (6x6) is overwritten in S (is stored by
-    // columns)
-    private void Cholesky( double[][] S , int n )
+    // S: the lower triangular matrix L is overwritten in S (stored by rows in a flat array)
+    // returns false if S is not positive definite
+    private boolean Cholesky( double[] S , int n )
     {
         // for each column
         for( int j = 0; j < n; j++ ) {
+            int jn = j * n;
             double sum = 0.0;  // sum for the diagonal term
             // we first fill with 0.0 until diagonal
             for( int i = 0; i < j; i++ ) {
-                S[i][j] = 0.0;
+                S[i * n + j] = 0.0;
                 // we can compute this sum at the same time
-                sum += S[j][i] * S[j][i];
+                sum += S[jn + i] * S[jn + i];
             }
             // now we compute the diagonal term
-            S[j][j] = Math.sqrt( S[j][j] - sum );
+            double diagonal = S[jn + j] - sum;
+            if( !( diagonal > 0.0 ) )
+                return false;
+            S[jn + j] = Math.sqrt( diagonal );
             // finally we compute the terms below the diagonal
             for( int i = j + 1; i < n; i++ ) {
+                int in = i * n;
                 // first the sum
                 sum = 0.0;
                 for( int k = 0; k < j; k++ ) {
-                    sum += S[i][k] * S[j][k];
+                    sum += S[in + k] * S[jn + k];
                 }
                 // after the non-diagonal term
-                S[i][j] = ( S[i][j] - sum ) / S[j][j];
+                S[in + j] = ( S[in + j] - sum ) / S[jn + j];
             }
         }// end j
 
-        return;
+        return true;
     }
 
 
     // Method: solve
     // solves the system of linear equations K*S = M for K
     // inputs:
-    // S: nxn positive definite matrix
+    // S: nxn positive definite matrix (stored by rows in a flat array)
     // M: 1xn matrix stored by rows
     // outputs:
     // M: K (1xn) is stored in the M memory space
-    private void solve( double[][] S , double[] M , int n )
+    // returns false if S is not positive definite
+    private boolean solve( double[] S , double[] M , int n )
     {
         // we first compute the Cholesky decomposition for transform the system from K*S
         // = M into K*L*L' = M
-        this.Cholesky( S , n );
+        if( !this.Cholesky( S , n ) )
+            return false;
 
         // first we solve (y*L' = M)
         for( int j = 0; j < n; j++ ) {
+            int jn = j * n;
             double sum = M[j];
             for( int k = 0; k < j; k++ ) {
-                sum -= M[k] * S[j][k];
+                sum -= M[k] * S[jn + k];
             }
-            M[j] = sum / S[j][j];
+            M[j] = sum / S[jn + j];
         }
         // now we solve (Ki*L = y)
         for( int j = n - 1; j > -1; j-- ) {
             double sum = M[j];
             for( int k = j + 1; k < n; k++ ) {
-                sum -= M[k] * S[k][j];
+                sum -= M[k] * S[k * n + j];
             }
-            M[j] = sum / S[j][j];
+            M[j] = sum / S[j * n + j];
         }
 
-        return;
+        return true;
     }
 
-}
 
+    // splits a range of indices until each task handles a single index
+    private static class RangeAction
+        extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        RangeAction( int from , int to , IntConsumer action )
+        {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        protected void compute()
+        {
+            if( this.to - this.from == 1 ) {
+                this.action.accept( this.from );
+            } else {
+                int middle = ( this.from + this.to ) >>> 1;
+                invokeAll( new RangeAction( this.from , middle , this.action ) , new RangeAction( middle , this.to , this.action ) );
+            }
+        }
+    }
+
+}
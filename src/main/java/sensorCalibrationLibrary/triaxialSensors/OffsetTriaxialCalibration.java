@@ -3,10 +3,16 @@ package sensorCalibrationLibrary.triaxialSensors;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+
+import sensorCalibrationLibrary.BinaryCalibrationFormat;
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
 
 
 
@@ -50,18 +56,37 @@ public class OffsetTriaxialCalibration
     }
     
     
-    public double[] correct( double[] input )
+    public void correct( double[] input , double[] output )
     {
-      double[] output = new double[3];
       output[0] = input[0] + this.offset[0];
       output[1] = input[1] + this.offset[1];
       output[2] = input[2] + this.offset[2];
-      return output;
+    }
+    
+    
+    public void correctBatch( double[] interleavedXYZ , int offset , int count , double[] output )
+    {
+        double offsetX = this.offset[0];
+        double offsetY = this.offset[1];
+        double offsetZ = this.offset[2];
+        int end = offset + 3 * count;
+        for( int i=offset; i<end; i+=3 ) {
+            output[i] = interleavedXYZ[i] + offsetX;
+            output[i+1] = interleavedXYZ[i+1] + offsetY;
+            output[i+2] = interleavedXYZ[i+2] + offsetZ;
+        }
+    }
+    
+    
+    public void correctBatch( double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        TriaxialCorrectionKernel.get().offset( this.offset[0] , this.offset[1] , this.offset[2] , x , y , z , offset , count , outX , outY , outZ );
     }
     
     
     public void save( String path )
     {
+        Measurement measurement = Instrumentation.beginCalibrationFile();
         try {
             // Create calibration file.
             BufferedWriter writer = new BufferedWriter( new FileWriter( path ) );
@@ -71,6 +96,7 @@ public class OffsetTriaxialCalibration
             writer.write( this.offset[2] + "\n" );
             writer.flush();
             writer.close();
+            Instrumentation.endCalibrationFile( measurement , Instrumentation.SAVE , this.getClass().getSimpleName() , path , new File( path ).length() );
         } catch( IOException e ) {
             e.printStackTrace();
         }
@@ -79,6 +105,7 @@ public class OffsetTriaxialCalibration
     
     public void load( String path )
     {
+        Measurement measurement = Instrumentation.beginCalibrationFile();
         try {
             // Open the file.
             FileInputStream fstream = new FileInputStream( path );
@@ -88,12 +115,43 @@ public class OffsetTriaxialCalibration
                 String strLine = br.readLine();
                 this.offset[i] = Double.parseDouble( strLine );
             }
+            long bytes = fstream.getChannel().size();
             // Close.
             br.close();
             fstream.close();
+            Instrumentation.endCalibrationFile( measurement , Instrumentation.LOAD , this.getClass().getSimpleName() , path , bytes );
         } catch( Exception e ) {
             e.printStackTrace();
         }
     }
     
+    
+    public int binarySize()
+    {
+        return BinaryCalibrationFormat.HEADER_SIZE + 3*8;
+    }
+    
+    
+    public void writeBinary( ByteBuffer buffer )
+    {
+        ByteBuffer record = BinaryCalibrationFormat.beginRecord( buffer );
+        record.putDouble( this.offset[0] );
+        record.putDouble( this.offset[1] );
+        record.putDouble( this.offset[2] );
+        BinaryCalibrationFormat.endRecord( buffer , record , BinaryCalibrationFormat.TYPE_OFFSET );
+    }
+    
+    
+    public void readBinary( ByteBuffer buffer )
+    {
+        ByteBuffer record = BinaryCalibrationFormat.beginReading( buffer , BinaryCalibrationFormat.TYPE_OFFSET );
+        if( record.remaining() != 3*8 ) {
+            throw new IllegalArgumentException( "TriaxialCalibration: wrong calibration." );
+        }
+        this.offset[0] = record.getDouble();
+        this.offset[1] = record.getDouble();
+        this.offset[2] = record.getDouble();
+        BinaryCalibrationFormat.endReading( buffer , record );
+    }
+    
 }
@@ -1,6 +1,17 @@
 package sensorCalibrationLibrary.triaxialSensors;
 
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import sensorCalibrationLibrary.instrumentation.Instrumentation;
+import sensorCalibrationLibrary.instrumentation.Measurement;
+
+
 
 public interface TriaxialCalibration
 {
@@ -8,10 +19,130 @@ public interface TriaxialCalibration
     // PUBLIC ABSTRACT METHODS
     ////////////////////////////////////////////////////////////////
     
-    public double[] correct( double[] input );
+    /**
+     * Corrects a triaxial measurement without allocating memory.
+     * <p>
+     * The input and output arrays can be the same array.
+     * 
+     * @param input     raw measurement (x,y,z).
+     * @param output    array in which the corrected measurement (x,y,z) is stored.
+     */
+    public void correct( double[] input , double[] output );
+    
+    /**
+     * Corrects a batch of triaxial measurements stored in a flat interleaved buffer (x0,y0,z0,x1,y1,z1,...) without allocating memory.
+     * <p>
+     * The corrected measurements are stored in the same positions of the output buffer.
+     * The input and output buffers can be the same array.
+     * 
+     * @param interleavedXYZ    buffer with the raw measurements.
+     * @param offset    index of the first component of the first measurement to be corrected.
+     * @param count     number of measurements to be corrected.
+     * @param output    buffer in which the corrected measurements are stored.
+     */
+    public void correctBatch( double[] interleavedXYZ , int offset , int count , double[] output );
+    
+    /**
+     * Corrects a batch of triaxial measurements stored as structure of arrays without allocating memory.
+     * <p>
+     * The i-th measurement is given by ( x[i] , y[i] , z[i] ), and the corrected one is stored in ( outX[i] , outY[i] , outZ[i] ).
+     * The loop is vectorized with the Vector API when it is available (see {@link TriaxialCorrectionKernel#isVectorized()}).
+     * The output arrays can be the same as the input arrays.
+     * 
+     * @param x     x-components of the raw measurements.
+     * @param y     y-components of the raw measurements.
+     * @param z     z-components of the raw measurements.
+     * @param offset    index of the first measurement to be corrected.
+     * @param count     number of measurements to be corrected.
+     * @param outX  array in which the x-components of the corrected measurements are stored.
+     * @param outY  array in which the y-components of the corrected measurements are stored.
+     * @param outZ  array in which the z-components of the corrected measurements are stored.
+     */
+    public void correctBatch( double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ );
     
     public void save( String path );
     
     public void load( String path );
     
+    /**
+     * Returns the size in bytes of the binary representation of the calibration.
+     * 
+     * @return  size in bytes of the binary representation of the calibration.
+     */
+    public int binarySize();
+    
+    /**
+     * Writes the binary representation of the calibration at the position of the buffer, and advances the position past it.
+     * 
+     * @param buffer    buffer with at least {@link #binarySize()} remaining bytes.
+     */
+    public void writeBinary( ByteBuffer buffer );
+    
+    /**
+     * Reads the binary representation of the calibration from the position of the buffer, and advances the position past it.
+     * 
+     * @param buffer    buffer with the binary representation of the calibration (it can be a {@link MappedByteBuffer}).
+     * @throws IllegalArgumentException     if the buffer does not hold a valid binary representation of this type of calibration.
+     */
+    public void readBinary( ByteBuffer buffer );
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC DEFAULT METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the corrected triaxial measurement.
+     * 
+     * @param input     raw measurement (x,y,z).
+     * @return  corrected measurement (x,y,z).
+     */
+    public default double[] correct( double[] input )
+    {
+        double[] output = new double[3];
+        this.correct( input , output );
+        return output;
+    }
+    
+    
+    /**
+     * Saves the calibration in a file with binary format.
+     * 
+     * @param path  path of the file.
+     */
+    public default void saveBinary( String path )
+    {
+        Measurement measurement = Instrumentation.beginCalibrationFile();
+        ByteBuffer buffer = ByteBuffer.allocate( this.binarySize() );
+        this.writeBinary( buffer );
+        buffer.flip();
+        try( FileChannel channel = FileChannel.open( Paths.get( path ) , StandardOpenOption.CREATE , StandardOpenOption.TRUNCATE_EXISTING , StandardOpenOption.WRITE ) ) {
+            while( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+            Instrumentation.endCalibrationFile( measurement , Instrumentation.SAVE , this.getClass().getSimpleName() , path , buffer.limit() );
+        } catch( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+    
+    
+    /**
+     * Loads the calibration from a file with binary format.
+     * 
+     * @param path  path of the file.
+     */
+    public default void loadBinary( String path )
+    {
+        Measurement measurement = Instrumentation.beginCalibrationFile();
+        try( FileChannel channel = FileChannel.open( Paths.get( path ) , StandardOpenOption.READ ) ) {
+            MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY , 0 , channel.size() );
+            this.readBinary( buffer );
+            Instrumentation.endCalibrationFile( measurement , Instrumentation.LOAD , this.getClass().getSimpleName() , path , buffer.capacity() );
+        } catch( Exception e ) {
+            e.printStackTrace();
+        }
+    }
+    
 }
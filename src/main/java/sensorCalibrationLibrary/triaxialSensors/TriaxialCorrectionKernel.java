@@ -0,0 +1,179 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+
+/**
+ * Loops used to correct triaxial measurements stored as structure of arrays (separate x, y, z, and temperature arrays).
+ * <p>
+ * This class implements the loops with scalar code, which the JIT compiler may auto-vectorize.
+ * If the {@code jdk.incubator.vector} module is available at runtime, and the library was compiled with the {@code vector-api} profile,
+ * {@link #get()} returns a subclass that implements them explicitly with the Vector API.
+ * Both perform the same floating-point operations in the same order, so their results are identical.
+ */
+public class TriaxialCorrectionKernel
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Name of the class that implements the loops with the Vector API.
+     */
+    private static final String VECTOR_KERNEL_CLASS = "sensorCalibrationLibrary.triaxialSensors.VectorTriaxialCorrectionKernel";
+    
+    /**
+     * Kernel used by the calibrations.
+     */
+    private static final TriaxialCorrectionKernel INSTANCE = load();
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    TriaxialCorrectionKernel()
+    {
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns true if the corrections of structure-of-arrays buffers are implemented with the Vector API.
+     * 
+     * @return  true if the Vector API is used; false if the scalar fallback is used.
+     */
+    public static boolean isVectorized()
+    {
+        return ( INSTANCE.getClass() != TriaxialCorrectionKernel.class );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the kernel used by the calibrations.
+     */
+    static TriaxialCorrectionKernel get()
+    {
+        return INSTANCE;
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PACKAGE-PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Computes out = K * in + c for measurements [offset,offset+count), where K is lower triangular.
+     * 
+     * @param Kc    coefficients (K11,K21,K22,K31,K32,K33,c1,c2,c3).
+     */
+    void correct( double[] Kc , double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        double K11 = Kc[0];
+        double K21 = Kc[1];
+        double K22 = Kc[2];
+        double K31 = Kc[3];
+        double K32 = Kc[4];
+        double K33 = Kc[5];
+        double c1 = Kc[6];
+        double c2 = Kc[7];
+        double c3 = Kc[8];
+        int end = offset + count;
+        for( int i=offset; i<end; i++ ) {
+            double xi = x[i];
+            double yi = y[i];
+            double zi = z[i];
+            outX[i] = K11 * xi                        +  c1;
+            outY[i] = K21 * xi  +  K22 * yi              +  c2;
+            outZ[i] = K31 * xi  +  K32 * yi  +  K33 * zi  +  c3;
+        }
+    }
+    
+    
+    /**
+     * Computes out = in + c for measurements [offset,offset+count).
+     */
+    void offset( double c1 , double c2 , double c3 , double[] x , double[] y , double[] z , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        int end = offset + count;
+        for( int i=offset; i<end; i++ ) {
+            outX[i] = x[i] + c1;
+            outY[i] = y[i] + c2;
+            outZ[i] = z[i] + c3;
+        }
+    }
+    
+    
+    /**
+     * Computes out = K(T) * in + c(T) for measurements [offset,offset+count), where the coefficients are evaluated at the temperature of each measurement.
+     * <p>
+     * The temperature is clamped to [temperatureMin,temperatureMax], and the polynomial is evaluated as in {@link Bernal2019TriaxialCalibration}.
+     * 
+     * @param z     calibration coefficients (K11,K21,K22,K31,K32,K33,c1,c2,c3) of each power of the temperature.
+     */
+    void correct( double[] z , double temperatureMin , double temperatureMax , double[] x , double[] y , double[] zz , double[] T , int offset , int count , double[] outX , double[] outY , double[] outZ )
+    {
+        int end = offset + count;
+        for( int i=offset; i<end; i++ ) {
+            double t = Math.max( temperatureMin , Math.min( T[i] , temperatureMax ) );
+            double K11 = 0.0;
+            double K21 = 0.0;
+            double K22 = 0.0;
+            double K31 = 0.0;
+            double K32 = 0.0;
+            double K33 = 0.0;
+            double c1 = 0.0;
+            double c2 = 0.0;
+            double c3 = 0.0;
+            double Tn = 1.0;
+            for( int n9=0; n9<z.length; n9+=9 ) {
+                K11 += z[n9] * Tn;
+                K21 += z[n9+1] * Tn;
+                K22 += z[n9+2] * Tn;
+                K31 += z[n9+3] * Tn;
+                K32 += z[n9+4] * Tn;
+                K33 += z[n9+5] * Tn;
+                c1 += z[n9+6] * Tn;
+                c2 += z[n9+7] * Tn;
+                c3 += z[n9+8] * Tn;
+                Tn *= t;
+            }
+            double xi = x[i];
+            double yi = y[i];
+            double zi = zz[i];
+            outX[i] = K11 * xi                        +  c1;
+            outY[i] = K21 * xi  +  K22 * yi              +  c2;
+            outZ[i] = K31 * xi  +  K32 * yi  +  K33 * zi  +  c3;
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Loads the Vector API kernel if it is available, or the scalar one otherwise.
+     */
+    private static TriaxialCorrectionKernel load()
+    {
+        try {
+            return (TriaxialCorrectionKernel) Class.forName( VECTOR_KERNEL_CLASS ).getDeclaredConstructor().newInstance();
+        } catch( ReflectiveOperationException | LinkageError e ) {
+            // the kernel was not compiled, or the jdk.incubator.vector module is not available
+            return new TriaxialCorrectionKernel();
+        }
+    }
+    
+}
@@ -0,0 +1,66 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+
+/**
+ * Calibration data of a single triaxial sensor, used by {@link Bernal2019BatchCalibrator}.
+ * <p>
+ * Implementations should load their data lazily in {@link #addTo(Bernal2019TriaxialCalibrator)},
+ * so that only the datasets being processed are held in memory.
+ */
+public interface TriaxialSensorDataset
+{
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC ABSTRACT METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the identifier of the sensor.
+     * 
+     * @return  identifier of the sensor.
+     */
+    public String getSensorId();
+    
+    /**
+     * Adds the calibration data of the sensor to a calibrator.
+     * 
+     * @param calibrator    calibrator to which the data is added.
+     * @throws Exception    if the data can not be read.
+     */
+    public void addTo( Bernal2019TriaxialCalibrator calibrator ) throws Exception;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns a dataset backed by primitive arrays.
+     * <p>
+     * The m-th measurement is given by ( xyz[3*m] , xyz[3*m+1] , xyz[3*m+2] ), T[m], y[m], and w[m].
+     * 
+     * @param sensorId  identifier of the sensor.
+     * @param xyz   interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+     * @param T     temperatures of the measurements.
+     * @param y     norms that the calibrated measurements should have.
+     * @param w     weights of the measurements.
+     * @return  dataset backed by the given arrays.
+     */
+    public static TriaxialSensorDataset of( String sensorId , double[] xyz , double[] T , double[] y , double[] w )
+    {
+        return new TriaxialSensorDataset()
+        {
+            public String getSensorId()
+            {
+                return sensorId;
+            }
+            
+            public void addTo( Bernal2019TriaxialCalibrator calibrator )
+            {
+                calibrator.addCalibrationData( xyz , T , y , w , 0 , T.length );
+            }
+        };
+    }
+    
+}
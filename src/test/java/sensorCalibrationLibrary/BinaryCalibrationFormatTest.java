@@ -0,0 +1,193 @@
+package sensorCalibrationLibrary;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sensorCalibrationLibrary.depthCameras.DepthCameraCalibration;
+import sensorCalibrationLibrary.depthCameras.maixSenseA010.MaixSenseA010DefaultCalibration;
+import sensorCalibrationLibrary.triaxialSensors.Bernal2019TriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.OffsetTriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.TriaxialCalibration;
+
+
+
+/**
+ * Checks that each calibration reads back exactly what it writes in the {@link BinaryCalibrationFormat}.
+ */
+public class BinaryCalibrationFormatTest
+{
+    ////////////////////////////////////////////////////////////////
+    // TESTS
+    ////////////////////////////////////////////////////////////////
+    
+    @Test
+    public void bernal2019RoundTrip()
+    {
+        Bernal2019TriaxialCalibration calibration = bernal2019Calibration();
+        Bernal2019TriaxialCalibration copy = new Bernal2019TriaxialCalibration();
+        assertRoundTrip( calibration , copy );
+        calibration.setTemperature( 27.0 );
+        copy.setTemperature( 27.0 );
+        assertSameCorrection( calibration , copy );
+        // the temperature range is stored too
+        calibration.setTemperature( 55.0 );
+        copy.setTemperature( 55.0 );
+        assertEquals( 40.0 , copy.getTemperature() );
+        assertSameCorrection( calibration , copy );
+    }
+    
+    
+    @Test
+    public void offsetRoundTrip()
+    {
+        OffsetTriaxialCalibration calibration = new OffsetTriaxialCalibration();
+        calibration.setOffset( 0.25 , -1.5 , 3.0e-7 );
+        OffsetTriaxialCalibration copy = new OffsetTriaxialCalibration();
+        assertRoundTrip( calibration , copy );
+        assertSameCorrection( calibration , copy );
+    }
+    
+    
+    @Test
+    public void maixSenseA010RoundTrip()
+    {
+        MaixSenseA010DefaultCalibration calibration = new MaixSenseA010DefaultCalibration();
+        calibration.setImageSize( 50 );
+        MaixSenseA010DefaultCalibration copy = new MaixSenseA010DefaultCalibration();
+        copy.setImageSize( 100 );
+        ByteBuffer buffer = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( buffer );
+        buffer.flip();
+        copy.readBinary( buffer );
+        assertEquals( 0 , buffer.remaining() );
+        assertArrayEquals( bytes( calibration ) , bytes( copy ) );
+        double[] expected = new double[3];
+        double[] actual = new double[3];
+        for( int row=0; row<50; row+=7 ) {
+            for( int column=0; column<50; column+=7 ) {
+                calibration.pixelToPoint3( column , row , 1.25 , expected , 0 );
+                copy.pixelToPoint3( column , row , 1.25 , actual , 0 );
+                assertArrayEquals( expected , actual );
+            }
+        }
+    }
+    
+    
+    @Test
+    public void fileRoundTrip( @TempDir Path directory )
+    {
+        Bernal2019TriaxialCalibration calibration = bernal2019Calibration();
+        String path = directory.resolve( "calibration.bin" ).toString();
+        calibration.saveBinary( path );
+        Bernal2019TriaxialCalibration copy = new Bernal2019TriaxialCalibration();
+        copy.loadBinary( path );
+        assertArrayEquals( bytes( calibration ) , bytes( copy ) );
+    }
+    
+    
+    @Test
+    public void rejectsCorruptRecord()
+    {
+        Bernal2019TriaxialCalibration calibration = bernal2019Calibration();
+        ByteBuffer buffer = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( buffer );
+        buffer.flip();
+        int last = buffer.limit() - 1;
+        buffer.put( last , (byte)~buffer.get( last ) );
+        assertThrows( IllegalArgumentException.class , () -> new Bernal2019TriaxialCalibration().readBinary( buffer ) );
+    }
+    
+    
+    @Test
+    public void rejectsOtherType()
+    {
+        OffsetTriaxialCalibration calibration = new OffsetTriaxialCalibration();
+        ByteBuffer buffer = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( buffer );
+        buffer.flip();
+        assertEquals( BinaryCalibrationFormat.TYPE_OFFSET , BinaryCalibrationFormat.recordType( buffer ) );
+        assertThrows( IllegalArgumentException.class , () -> new Bernal2019TriaxialCalibration().readBinary( buffer ) );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns a second-order calibration with random coefficients, valid between 10 and 40 degrees.
+     */
+    private static Bernal2019TriaxialCalibration bernal2019Calibration()
+    {
+        Random random = new Random( 1 );
+        double[] coefficients = new double[27];
+        for( int i=0; i<coefficients.length; i++ ) {
+            coefficients[i] = ( i < 9 ) ? 1.0 + 0.1 * random.nextGaussian() : 1.0e-3 * random.nextGaussian();
+        }
+        Bernal2019TriaxialCalibration calibration = new Bernal2019TriaxialCalibration();
+        calibration.set( coefficients );
+        calibration.setTemperatureRange( 10.0 , 40.0 );
+        return calibration;
+    }
+    
+    
+    /**
+     * Writes a calibration into a new buffer, and returns its record.
+     */
+    private static byte[] bytes( TriaxialCalibration calibration )
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( buffer );
+        return buffer.array();
+    }
+    
+    
+    /**
+     * Writes a depth camera calibration into a new buffer, and returns its record.
+     */
+    private static byte[] bytes( DepthCameraCalibration calibration )
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( buffer );
+        return buffer.array();
+    }
+    
+    
+    /**
+     * Reads the record written by a calibration into a copy, and checks that the copy writes the same record.
+     */
+    private static void assertRoundTrip( TriaxialCalibration calibration , TriaxialCalibration copy )
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( calibration.binarySize() );
+        calibration.writeBinary( buffer );
+        assertEquals( calibration.binarySize() , buffer.position() );
+        buffer.flip();
+        copy.readBinary( buffer );
+        assertEquals( 0 , buffer.remaining() );
+        assertArrayEquals( buffer.array() , bytes( copy ) );
+    }
+    
+    
+    /**
+     * Checks that two calibrations correct a few measurements to exactly the same values.
+     */
+    private static void assertSameCorrection( TriaxialCalibration expected , TriaxialCalibration actual )
+    {
+        Random random = new Random( 2 );
+        for( int m=0; m<10; m++ ) {
+            double[] input = { random.nextGaussian() , random.nextGaussian() , random.nextGaussian() };
+            assertArrayEquals( expected.correct( input ) , actual.correct( input ) );
+        }
+    }
+    
+}
@@ -0,0 +1,143 @@
+package sensorCalibrationLibrary;
+
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import sensorCalibrationLibrary.depthCameras.DepthCameraCalibration;
+import sensorCalibrationLibrary.depthCameras.maixSenseA010.MaixSenseA010DefaultCalibration;
+import sensorCalibrationLibrary.triaxialSensors.OffsetTriaxialCalibration;
+import sensorCalibrationLibrary.triaxialSensors.TriaxialCalibration;
+
+
+
+/**
+ * Checks the lookups of a {@link CalibrationBundle} saved by a {@link CalibrationBundleWriter}.
+ */
+public class CalibrationBundleTest
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of triaxial sensors in the bundle.
+     */
+    private static final int SENSORS = 100;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // TESTS
+    ////////////////////////////////////////////////////////////////
+    
+    @Test
+    public void findsPresentSensors( @TempDir Path directory ) throws IOException
+    {
+        CalibrationBundle bundle = CalibrationBundle.open( save( directory ) );
+        assertEquals( SENSORS + 1 , bundle.size() );
+        for( int s=0; s<SENSORS; s++ ) {
+            String sensorId = sensorId( s );
+            assertTrue( bundle.contains( sensorId ) );
+            TriaxialCalibration calibration = bundle.getTriaxialCalibration( sensorId );
+            assertNotNull( calibration );
+            assertArrayEquals( new double[]{ 1.0 + s , 2.0 , 3.0 } , calibration.correct( new double[]{ 1.0 , 2.0 , 3.0 } ) );
+            // the calibration is materialized once, and shared
+            assertSame( calibration , bundle.getTriaxialCalibration( sensorId ) );
+        }
+        DepthCameraCalibration camera = bundle.getDepthCameraCalibration( "camera" );
+        assertNotNull( camera );
+        assertEquals( new MaixSenseA010DefaultCalibration().binarySize() , camera.binarySize() );
+    }
+    
+    
+    @Test
+    public void missesAbsentSensors( @TempDir Path directory ) throws IOException
+    {
+        CalibrationBundle bundle = CalibrationBundle.open( save( directory ) );
+        for( String sensorId : Arrays.asList( "" , "accelerometer-" , "accelerometer-0100" , "accelerometer-00500" , "zzz" , "camera-2" , "\u00e1" ) ) {
+            assertFalse( bundle.contains( sensorId ) , sensorId );
+            assertNull( bundle.getTriaxialCalibration( sensorId ) , sensorId );
+            assertNull( bundle.getDepthCameraCalibration( sensorId ) , sensorId );
+        }
+    }
+    
+    
+    @Test
+    public void listsSortedSensorIds( @TempDir Path directory ) throws IOException
+    {
+        CalibrationBundle bundle = CalibrationBundle.open( save( directory ) );
+        List<String> expected = new ArrayList<String>();
+        for( int s=0; s<SENSORS; s++ ) {
+            expected.add( sensorId( s ) );
+        }
+        expected.add( "camera" );
+        assertEquals( expected , bundle.sensorIds() );
+    }
+    
+    
+    @Test
+    public void rejectsWrongCalibrationType( @TempDir Path directory ) throws IOException
+    {
+        CalibrationBundle bundle = CalibrationBundle.open( save( directory ) );
+        assertThrows( IllegalArgumentException.class , () -> bundle.getDepthCameraCalibration( sensorId( 0 ) ) );
+        assertThrows( IllegalArgumentException.class , () -> bundle.getTriaxialCalibration( "camera" ) );
+    }
+    
+    
+    @Test
+    public void rejectsDuplicateSensors()
+    {
+        CalibrationBundleWriter writer = new CalibrationBundleWriter();
+        writer.add( "accelerometer" , new OffsetTriaxialCalibration() );
+        assertThrows( IllegalArgumentException.class , () -> writer.add( "accelerometer" , new OffsetTriaxialCalibration() ) );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns the ID of the s-th triaxial sensor.
+     */
+    private static String sensorId( int s )
+    {
+        return String.format( "accelerometer-%04d" , s );
+    }
+    
+    
+    /**
+     * Saves a bundle with {@link #SENSORS} triaxial sensors, added in reverse order, and a depth camera.
+     */
+    private static String save( Path directory ) throws IOException
+    {
+        CalibrationBundleWriter writer = new CalibrationBundleWriter();
+        writer.add( "camera" , new MaixSenseA010DefaultCalibration() );
+        for( int s=SENSORS-1; s>=0; s-- ) {
+            OffsetTriaxialCalibration calibration = new OffsetTriaxialCalibration();
+            calibration.setOffset( s , 0.0 , 0.0 );
+            writer.add( sensorId( s ) , calibration );
+        }
+        String path = directory.resolve( "calibrations.bundle" ).toString();
+        writer.save( path );
+        return path;
+    }
+    
+}
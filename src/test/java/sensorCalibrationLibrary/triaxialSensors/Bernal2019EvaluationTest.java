@@ -0,0 +1,191 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+
+/**
+ * Checks the closed-form statistics of {@link Bernal2019TriaxialCalibrator#evaluate(TriaxialCalibration)} against a pass over the data.
+ */
+public class Bernal2019EvaluationTest
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Number of measurements.
+     */
+    private static final int COUNT = 5000;
+    
+    /**
+     * Relative tolerance of the comparisons.
+     */
+    private static final double TOLERANCE = 1.0e-8;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE VARIABLES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+     */
+    private final double[] xyz = new double[3*COUNT];
+    
+    /**
+     * Temperatures of the measurements.
+     */
+    private final double[] T = new double[COUNT];
+    
+    /**
+     * Norms that the calibrated measurements should have.
+     */
+    private final double[] y = new double[COUNT];
+    
+    /**
+     * Weights of the measurements.
+     */
+    private final double[] w = new double[COUNT];
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Generates the measurements of a sensor with a temperature-dependent gain and offset.
+     */
+    public Bernal2019EvaluationTest()
+    {
+        Random random = new Random( 3 );
+        for( int m=0; m<COUNT; m++ ) {
+            double x1 = random.nextGaussian();
+            double x2 = random.nextGaussian();
+            double x3 = random.nextGaussian();
+            this.T[m] = 20.0 + 10.0 * random.nextDouble();
+            double gain = 9.81 * ( 1.0 + 0.002 * ( this.T[m] - 25.0 ) ) / Math.sqrt( x1 * x1 + x2 * x2 + x3 * x3 );
+            this.xyz[3*m] = 1.1 * gain * x1 + 0.2 + 0.02 * random.nextGaussian();
+            this.xyz[3*m+1] = 0.9 * gain * x2 - 0.1 + 0.02 * random.nextGaussian();
+            this.xyz[3*m+2] = gain * x3 + 0.01 * this.T[m] + 0.02 * random.nextGaussian();
+            this.y[m] = 9.81;
+            this.w[m] = 0.5 + random.nextDouble();
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // TESTS
+    ////////////////////////////////////////////////////////////////
+    
+    @Test
+    public void matchesPassOverDataForOwnCalibration()
+    {
+        Bernal2019TriaxialCalibrator calibrator = this.calibrator( 2 );
+        Bernal2019TriaxialCalibration calibration = calibrator.getCalibration();
+        Bernal2019Evaluation evaluation = calibrator.evaluate( calibration );
+        this.assertMatchesPassOverData( evaluation , calibration );
+        assertEquals( calibrator.getResidual() , evaluation.getResidual() , TOLERANCE * calibrator.getResidual() );
+    }
+    
+    
+    @Test
+    public void matchesPassOverDataForLowerOrderCalibration()
+    {
+        Bernal2019TriaxialCalibration calibration = this.calibrator( 1 ).getCalibration();
+        Bernal2019TriaxialCalibrator calibrator = this.calibrator( 2 );
+        Bernal2019Evaluation evaluation = calibrator.evaluate( calibration );
+        this.assertMatchesPassOverData( evaluation , calibration );
+        // the second-order calibration fits the data at least as well
+        assertTrue( calibrator.getResidual() <= evaluation.getResidual() * ( 1.0 + TOLERANCE ) );
+    }
+    
+    
+    @Test
+    public void matchesPassOverDataForAffineCalibration()
+    {
+        OffsetTriaxialCalibration calibration = new OffsetTriaxialCalibration();
+        calibration.setOffset( -0.2 , 0.1 , -0.25 );
+        Bernal2019Evaluation evaluation = this.calibrator( 1 ).evaluate( calibration );
+        this.assertMatchesPassOverData( evaluation , calibration );
+    }
+    
+    
+    @Test
+    public void rejectsHigherOrderCalibration()
+    {
+        Bernal2019TriaxialCalibration calibration = this.calibrator( 2 ).getCalibration();
+        assertThrows( IllegalArgumentException.class , () -> this.calibrator( 1 ).evaluate( calibration ) );
+    }
+    
+    
+    @Test
+    public void rejectsEmptyCalibrator()
+    {
+        Bernal2019TriaxialCalibrator calibrator = new Bernal2019TriaxialCalibrator();
+        calibrator.setPolynomialOrder( 1 );
+        assertThrows( IllegalStateException.class , () -> calibrator.evaluate( new OffsetTriaxialCalibration() ) );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Returns a calibrator of the given order, calibrated with the measurements.
+     */
+    private Bernal2019TriaxialCalibrator calibrator( int polynomialOrder )
+    {
+        Bernal2019TriaxialCalibrator calibrator = new Bernal2019TriaxialCalibrator();
+        calibrator.setPolynomialOrder( polynomialOrder );
+        calibrator.addCalibrationData( this.xyz , this.T , this.y , this.w , 0 , COUNT );
+        calibrator.calibrate();
+        return calibrator;
+    }
+    
+    
+    /**
+     * Corrects each measurement at its temperature, and checks the statistics of the residuals y^2 - |x_calibrated|^2 against the evaluation.
+     */
+    private void assertMatchesPassOverData( Bernal2019Evaluation evaluation , TriaxialCalibration calibration )
+    {
+        double W = 0.0;
+        double sum = 0.0;
+        double sumSquares = 0.0;
+        double sumY4 = 0.0;
+        double[] corrected = new double[3];
+        for( int m=0; m<COUNT; m++ ) {
+            if( calibration instanceof Bernal2019TriaxialCalibration ) {
+                ( (Bernal2019TriaxialCalibration)calibration ).setTemperature( this.T[m] );
+            }
+            calibration.correct( new double[]{ this.xyz[3*m] , this.xyz[3*m+1] , this.xyz[3*m+2] } , corrected );
+            double r = this.y[m] * this.y[m] - ( corrected[0] * corrected[0] + corrected[1] * corrected[1] + corrected[2] * corrected[2] );
+            W += this.w[m];
+            sum += this.w[m] * r;
+            sumSquares += this.w[m] * r * r;
+            sumY4 += this.w[m] * this.y[m] * this.y[m] * this.y[m] * this.y[m];
+        }
+        double mean = sum / W;
+        double residual = Math.sqrt( sumSquares / W );
+        double standardDeviation = Math.sqrt( sumSquares / W - mean * mean );
+        assertEquals( W , evaluation.getWeight() , TOLERANCE * W );
+        assertEquals( residual , evaluation.getResidual() , TOLERANCE * residual );
+        // the mean is compared on the scale of the residual, as it is a difference of terms of the order of y^2
+        assertEquals( mean , evaluation.getMeanResidual() , TOLERANCE * residual );
+        assertEquals( standardDeviation , evaluation.getResidualStandardDeviation() , TOLERANCE * residual );
+        assertEquals( residual / Math.sqrt( sumY4 / W ) , evaluation.getRelativeResidual() , TOLERANCE * residual );
+    }
+    
+}
@@ -0,0 +1,174 @@
+package sensorCalibrationLibrary.triaxialSensors;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+
+/**
+ * Checks that merging the moment tensors of several shards gives the tensors of a serial pass over the same measurements.
+ */
+public class Bernal2019MomentAccumulatorTest
+{
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CONSTANTS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Order of the polynomial used for the temperature dependence.
+     */
+    private static final int N = 2;
+    
+    /**
+     * Number of measurements.
+     */
+    private static final int COUNT = 20000;
+    
+    /**
+     * Relative tolerance of the comparisons, which only differ in the rounding of the sums.
+     */
+    private static final double TOLERANCE = 1.0e-12;
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // TESTS
+    ////////////////////////////////////////////////////////////////
+    
+    @Test
+    public void mergedShardsMatchSerial()
+    {
+        Data data = new Data( COUNT , 1 );
+        Bernal2019MomentAccumulator serial = new Bernal2019MomentAccumulator( N );
+        for( int m=0; m<COUNT; m++ ) {
+            serial.add( data.w[m] , data.xyz[3*m] , data.xyz[3*m+1] , data.xyz[3*m+2] , data.T[m] , data.y[m] );
+        }
+        // shards of different sizes, one of them empty
+        int[] bounds = { 0 , 1 , 5000 , 5000 , 12345 , COUNT };
+        Bernal2019MomentAccumulator merged = new Bernal2019MomentAccumulator( N );
+        for( int s=0; s+1<bounds.length; s++ ) {
+            Bernal2019MomentAccumulator shard = new Bernal2019MomentAccumulator( N );
+            shard.add( data.xyz , data.T , data.y , data.w , bounds[s] , bounds[s+1] - bounds[s] );
+            merged.merge( shard );
+        }
+        assertSameMoments( serial , merged );
+    }
+    
+    
+    @Test
+    public void parallelIngestMatchesSerial()
+    {
+        Data data = new Data( COUNT , 2 );
+        Bernal2019TriaxialCalibrator serial = new Bernal2019TriaxialCalibrator();
+        serial.setPolynomialOrder( N );
+        serial.addCalibrationData( data.xyz , data.T , data.y , data.w , 0 , COUNT );
+        Bernal2019TriaxialCalibrator parallel = new Bernal2019TriaxialCalibrator();
+        parallel.setPolynomialOrder( N );
+        parallel.addCalibrationDataParallel( data.xyz , data.T , data.y , data.w , 0 , COUNT );
+        assertSameMoments( serial.getMoments() , parallel.getMoments() );
+    }
+    
+    
+    @Test
+    public void rejectsDifferentOrders()
+    {
+        Bernal2019MomentAccumulator moments = new Bernal2019MomentAccumulator( 1 );
+        assertThrows( IllegalArgumentException.class , () -> moments.merge( new Bernal2019MomentAccumulator( 2 ) ) );
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE STATIC METHODS
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Checks that two accumulators hold the same weight, temperature range, and tensors.
+     */
+    private static void assertSameMoments( Bernal2019MomentAccumulator expected , Bernal2019MomentAccumulator actual )
+    {
+        assertEquals( expected.getWeight() , actual.getWeight() , TOLERANCE * expected.getWeight() );
+        assertEquals( expected.getTemperatureMin() , actual.getTemperatureMin() );
+        assertEquals( expected.getTemperatureMax() , actual.getTemperatureMax() );
+        assertEquals( expected.Y4() , actual.Y4() , TOLERANCE * Math.abs( expected.Y4() ) );
+        for( int n=0; n<=2*N; n++ ) {
+            for( int i=0; i<4; i++ ) {
+                for( int j=i; j<4; j++ ) {
+                    double Y2 = expected.Y2( n , i , j );
+                    assertEquals( Y2 , actual.Y2( n , i , j ) , TOLERANCE * Math.max( Math.abs( Y2 ) , 1.0 ) );
+                }
+            }
+        }
+        for( int n=0; n<=4*N; n++ ) {
+            for( int i=0; i<4; i++ ) {
+                for( int j=i; j<4; j++ ) {
+                    for( int k=j; k<4; k++ ) {
+                        for( int l=k; l<4; l++ ) {
+                            double X4 = expected.X4( n , i , j , k , l );
+                            assertEquals( X4 , actual.X4( n , i , j , k , l ) , TOLERANCE * Math.max( Math.abs( X4 ) , 1.0 ) );
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    
+    
+    ////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////
+    
+    /**
+     * Random measurements of a sensor with a temperature-dependent gain, stored as the block ingest methods expect them.
+     */
+    private static class Data
+    {
+        /**
+         * Interleaved measurements (x0,y0,z0,x1,y1,z1,...).
+         */
+        final double[] xyz;
+        
+        /**
+         * Temperatures of the measurements.
+         */
+        final double[] T;
+        
+        /**
+         * Norms that the calibrated measurements should have.
+         */
+        final double[] y;
+        
+        /**
+         * Weights of the measurements.
+         */
+        final double[] w;
+        
+        Data( int count , long seed )
+        {
+            Random random = new Random( seed );
+            this.xyz = new double[3*count];
+            this.T = new double[count];
+            this.y = new double[count];
+            this.w = new double[count];
+            for( int m=0; m<count; m++ ) {
+                double x1 = random.nextGaussian();
+                double x2 = random.nextGaussian();
+                double x3 = random.nextGaussian();
+                this.T[m] = -1.0 + 2.0 * random.nextDouble();
+                double gain = ( 1.0 + 0.05 * this.T[m] ) / Math.sqrt( x1 * x1 + x2 * x2 + x3 * x3 );
+                this.xyz[3*m] = gain * x1 + 0.01 * random.nextGaussian();
+                this.xyz[3*m+1] = gain * x2 + 0.01 * random.nextGaussian();
+                this.xyz[3*m+2] = gain * x3 + 0.01 * random.nextGaussian();
+                this.y[m] = 1.0;
+                this.w[m] = 0.5 + random.nextDouble();
+            }
+        }
+    }
+    
+}